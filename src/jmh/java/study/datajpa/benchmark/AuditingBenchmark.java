@@ -0,0 +1,79 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-30
+ * Time: 21:10
+ **/
+
+/**
+ * AuditingEntityListener(batched=false) vs AuditStampListener(batched=true)
+ * 트랜잭션 하나에서 회원 ROWS 명을 저장하고 flush 후 롤백한다. (persist 콜백 비용 비교)
+ * 설정값이 다른 애플리케이션을 띄워야 하기 때문에 MemberDataset을 사용하지 않는다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(4)
+@State(Scope.Benchmark)
+public class AuditingBenchmark {
+
+    static final int ROWS = 1_000;
+
+    @Param({"false", "true"})
+    public boolean batched;
+
+    ConfigurableApplicationContext context;
+    EntityManager em;
+    TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("jmh")
+                .properties("datajpa.auditing.batched=" + batched)
+                .run();
+        em = context.getBean(EntityManager.class);
+        tx = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int persist() {
+        return tx.execute(status -> {
+            for (int i = 0; i < ROWS; i++) {
+                em.persist(new Member("audit" + i, 20));
+            }
+            em.flush();
+            em.clear();
+            status.setRollbackOnly();
+            return ROWS;
+        });
+    }
+}
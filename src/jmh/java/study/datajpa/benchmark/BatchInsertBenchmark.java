@@ -0,0 +1,52 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import study.datajpa.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 16:40
+ **/
+// saveAll vs saveAllBatched (1만건 저장 후 롤백)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BatchInsertBenchmark {
+
+    static final int ROWS = 10_000;
+
+    @Benchmark
+    public int saveAll(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            int count = dataset.memberRepository.saveAll(newMembers()).size();
+            dataset.em.flush();
+            status.setRollbackOnly();
+            return count;
+        });
+    }
+
+    @Benchmark
+    public long saveAllBatched(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            long count = dataset.memberRepository.saveAllBatched(newMembers(), 1000);
+            status.setRollbackOnly();
+            return count;
+        });
+    }
+
+    private List<Member> newMembers() {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < ROWS; i++) {
+            members.add(new Member("insert" + i, 20));
+        }
+        return members;
+    }
+}
@@ -0,0 +1,52 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import study.datajpa.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 16:10
+ **/
+
+/**
+ * 벌크 연산(update 쿼리 한번) vs 변경감지(엔티티 하나씩 update)
+ * 데이터셋이 변하지 않도록 매번 롤백한다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class BulkUpdateBenchmark {
+
+    static final int AGE = 90; // 전체의 10%
+
+    @Benchmark
+    public int bulkAgePlus(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            int count = dataset.memberRepository.bulkAgePlus(AGE);
+            status.setRollbackOnly();
+            return count;
+        });
+    }
+
+    @Benchmark
+    public int dirtyChecking(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            List<Member> members = dataset.em.createQuery("select m from Member m where m.age >= :age", Member.class)
+                    .setParameter("age", AGE)
+                    .getResultList();
+            for (Member member : members) {
+                member.setAge(member.getAge() + 1);
+            }
+            dataset.em.flush();
+            status.setRollbackOnly();
+            return members.size();
+        });
+    }
+}
@@ -0,0 +1,90 @@
+package study.datajpa.benchmark;
+
+import org.hibernate.Hibernate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-04
+ * Time: 17:30
+ **/
+
+/**
+ * 팀원이 teamSize 명인 팀으로 회원 한명의 팀을 변경 (변경 후 롤백)
+ * - extraLazy: Member.changeTeam -> members 컬렉션을 초기화하지 않고 add를 큐에 쌓는다.
+ * - initialized: 이전 방식처럼 members 컬렉션을 모두 로딩한 뒤에 add
+ * 메모리 사용량은 -prof gc 로 확인 (gc.alloc.rate.norm)
+ * java -jar build/libs/data-jpa-0.0.1-SNAPSHOT-jmh.jar ChangeTeamBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChangeTeamBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class LargeTeam {
+
+        @Param({"10000", "50000"})
+        public int teamSize;
+
+        Long teamId;
+
+        @Setup(Level.Trial)
+        public void setUp(MemberDataset dataset) {
+            Team team = dataset.teamRepository.save(new Team("largeTeam"));
+            teamId = team.getId();
+            dataset.memberRepository.saveAllBatched(() -> new Iterator<Member>() {
+                int index = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return index < teamSize;
+                }
+
+                @Override
+                public Member next() {
+                    return new Member("largeTeamMember" + index++, 20, team);
+                }
+            }, 1000);
+        }
+    }
+
+    @Benchmark
+    public int extraLazy(MemberDataset dataset, LargeTeam largeTeam) {
+        return dataset.tx.execute(status -> {
+            status.setRollbackOnly();
+            Team team = dataset.em.find(Team.class, largeTeam.teamId);
+            Member member = dataset.em.find(Member.class, dataset.minMemberId());
+            member.changeTeam(team);
+            dataset.em.flush();
+            return team.getMemberCount();
+        });
+    }
+
+    @Benchmark
+    public int initialized(MemberDataset dataset, LargeTeam largeTeam) {
+        return dataset.tx.execute(status -> {
+            status.setRollbackOnly();
+            Team team = dataset.em.find(Team.class, largeTeam.teamId);
+            Member member = dataset.em.find(Member.class, dataset.minMemberId());
+            Hibernate.initialize(team.getMembers());
+            member.setTeam(team);
+            team.getMembers().add(member);
+            dataset.em.flush();
+            return team.getMembers().size();
+        });
+    }
+}
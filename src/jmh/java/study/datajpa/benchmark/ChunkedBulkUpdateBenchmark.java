@@ -0,0 +1,66 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import study.datajpa.repository.support.BulkUpdateResult;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-24
+ * Time: 23:10
+ **/
+
+/**
+ * 벌크 update 한번 vs PK 범위 청크 update
+ * 같은 그룹의 oltp 스레드가 회원 한명씩 update 하면서 벌크 연산의 락을 기다리는 시간을 함께 측정한다.
+ * (oltp 의 지연시간이 곧 락 대기 시간)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ChunkedBulkUpdateBenchmark {
+
+    static final String SINGLE_ROW_UPDATE = "update Member m set m.username = m.username where m.id = :id";
+
+    @Benchmark
+    @Group("singleStatement")
+    @GroupThreads(1)
+    public int singleStatementBulk(MemberDataset dataset) {
+        return dataset.tx.execute(status -> dataset.memberRepository.bulkAgePlus(0));
+    }
+
+    @Benchmark
+    @Group("singleStatement")
+    @GroupThreads(3)
+    public int singleStatementOltp(MemberDataset dataset) {
+        return updateRandomMember(dataset);
+    }
+
+    @Benchmark
+    @Group("chunked")
+    @GroupThreads(1)
+    public BulkUpdateResult chunkedBulk(MemberDataset dataset) {
+        return dataset.memberJpaRepository.bulkAgePlusChunked(0, 1000);
+    }
+
+    @Benchmark
+    @Group("chunked")
+    @GroupThreads(3)
+    public int chunkedOltp(MemberDataset dataset) {
+        return updateRandomMember(dataset);
+    }
+
+    private int updateRandomMember(MemberDataset dataset) {
+        long id = dataset.minMemberId() + ThreadLocalRandom.current().nextInt(dataset.size);
+        return dataset.tx.execute(status -> dataset.em.createQuery(SINGLE_ROW_UPDATE)
+                .setParameter("id", id)
+                .executeUpdate());
+    }
+}
@@ -0,0 +1,84 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.springframework.dao.ConcurrencyFailureException;
+import study.datajpa.entity.Member;
+
+import javax.persistence.LockModeType;
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 23:00
+ **/
+
+/**
+ * 동시 쓰기 처리량: 비관적 락(select ... for update) vs 낙관적 락 + 재시도(@RetryOnConflict)
+ * - 쓰기 스레드 수는 @Threads (jmh -t 옵션으로 변경)
+ * - hotRows: 쓰기가 몰리는 회원 수 (1 이면 모든 스레드가 같은 row를 수정)
+ * 데이터셋 회원의 나이가 계속 증가하기 때문에 나이 조건을 사용하는 다른 벤치마크와 같이 실행하지 말것
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+
+    @Param({"1", "16"})
+    public int hotRows;
+
+    @Benchmark
+    public int pessimistic(MemberDataset dataset) {
+        long id = hotMemberId(dataset);
+        return dataset.tx.execute(status -> {
+            Member member = dataset.em.find(Member.class, id, LockModeType.PESSIMISTIC_WRITE);
+            member.setAge(member.getAge() + 1);
+            return member.getAge();
+        });
+    }
+
+    // 재시도 횟수(maxAttempts)를 넘긴 쓰기는 예외로 벤치마크를 중단하지 않고 exhausted로 센다.
+    @Benchmark
+    public int optimistic(MemberDataset dataset, Writes writes) {
+        try {
+            int age = dataset.memberRepository.increaseAge(hotMemberId(dataset), 1).getAge();
+            writes.committed++;
+            return age;
+        } catch (ConcurrencyFailureException | OptimisticLockException e) {
+            writes.exhausted++;
+            return -1;
+        }
+    }
+
+    private long hotMemberId(MemberDataset dataset) {
+        return dataset.minMemberId() + ThreadLocalRandom.current().nextInt(hotRows);
+    }
+
+    // 결과에 optimistic:committed, optimistic:exhausted 로 같이 출력된다.
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Writes {
+        public long committed;
+        public long exhausted;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            committed = 0;
+            exhausted = 0;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.NestedClosedProjections;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 22:40
+ **/
+
+/**
+ * JPQL new 오퍼레이션 / 엔티티 -> DTO 변환 vs ProjectionMapper (컬럼을 DTO에 바로 바인딩)
+ * 할당량은 -prof gc 옵션으로 비교 (gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class DtoProjectionBenchmark {
+
+    private static final PageRequest PAGE = PageRequest.of(0, 100);
+
+    // 기존 findMemberDto (JPQL new 오퍼레이션)
+    @Benchmark
+    public List<MemberDto> jpqlConstructor(MemberDataset dataset) {
+        return dataset.tx.execute(status -> dataset.em.createQuery("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name)" +
+                " from Member m join m.team t", MemberDto.class)
+                .getResultList());
+    }
+
+    @Benchmark
+    public List<MemberDto> mapperConstructor(MemberDataset dataset) {
+        return dataset.tx.execute(status -> dataset.memberRepository.findMemberDto());
+    }
+
+    // 기존 MemberController.list (엔티티 페이지 조회 후 DTO 변환)
+    @Benchmark
+    public Page<MemberDto> entityPageToDto(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            Page<Member> page = dataset.memberRepository.findAll(PAGE);
+            return page.map(member -> new MemberDto(member.getId(), member.getUsername(), member.getTeam().getName()));
+        });
+    }
+
+    @Benchmark
+    public Page<MemberDto> mapperPage(MemberDataset dataset) {
+        return dataset.tx.execute(status -> dataset.memberRepository.findMemberDtoPage(PAGE));
+    }
+
+    // 중첩 projection: Spring data JPA (team은 엔티티로 조회) vs ProjectionMapper
+    @Benchmark
+    public void springNestedProjection(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            for (NestedClosedProjections result : dataset.memberRepository.findClazzDynamicProjectionsByUsername(dataset.targetUsername(), NestedClosedProjections.class)) {
+                blackhole.consume(result.getTeam().getName());
+            }
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void mapperNestedProjection(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            for (NestedClosedProjections result : dataset.memberRepository.findNestedProjectionsByUsername(dataset.targetUsername())) {
+                blackhole.consume(result.getTeam().getName());
+            }
+            return null;
+        });
+    }
+}
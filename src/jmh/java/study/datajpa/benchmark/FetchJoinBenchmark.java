@@ -0,0 +1,45 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import study.datajpa.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 15:41
+ **/
+// JPQL fetch join vs @EntityGraph (전체 회원 + 팀 이름 접근)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FetchJoinBenchmark {
+
+    @Benchmark
+    public void fetchJoin(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            consume(dataset.memberRepository.findMemberFetchJoin(), blackhole);
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void entityGraph(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            consume(dataset.memberRepository.findMemberEntityGraph(), blackhole);
+            return null;
+        });
+    }
+
+    private void consume(List<Member> members, Blackhole blackhole) {
+        for (Member member : members) {
+            blackhole.consume(member.getTeam().getName());
+        }
+    }
+}
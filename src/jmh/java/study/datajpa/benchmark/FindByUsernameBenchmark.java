@@ -0,0 +1,38 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import study.datajpa.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 15:30
+ **/
+// 같은 조건의 단건 조회를 NamedQuery / 메서드 이름 쿼리 / @Query 로 비교
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FindByUsernameBenchmark {
+
+    @Benchmark
+    public List<Member> namedQuery(MemberDataset dataset) {
+        return dataset.memberRepository.findByUsername(dataset.targetUsername());
+    }
+
+    @Benchmark
+    public List<Member> derivedQuery(MemberDataset dataset) {
+        return dataset.memberRepository.findListByUsername(dataset.targetUsername());
+    }
+
+    @Benchmark
+    public List<Member> annotatedQuery(MemberDataset dataset) {
+        int age = (dataset.size / 2) % 100;
+        return dataset.memberRepository.findUser(dataset.targetUsername(), age);
+    }
+}
@@ -0,0 +1,97 @@
+package study.datajpa.benchmark;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.support.InListExecutor;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-04
+ * Time: 15:00
+ **/
+
+/**
+ * 이름 목록(in 절) 조회: 한번에 바인딩 vs 청크 순차 조회 vs 청크 동시 조회
+ * 호출마다 이름 수를 names/2 ~ names 사이에서 랜덤하게 정해서 크기가 다른 리스트가 계속 들어오는 상황을 만든다.
+ * trial이 끝날때 쿼리 플랜 캐시 hit 비율을 출력한다. (in_clause_parameter_padding)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class InListBenchmark {
+
+    @Param({"10", "100", "1000", "10000", "50000"})
+    public int names;
+
+    InListExecutor inListExecutor;
+    Statistics statistics;
+    long planHits;
+    long planMisses;
+
+    @Setup(Level.Trial)
+    public void setUp(MemberDataset dataset) {
+        inListExecutor = dataset.context.getBean(InListExecutor.class);
+        statistics = dataset.context.getBean(EntityManagerFactory.class).unwrap(SessionFactory.class).getStatistics();
+        planHits = statistics.getQueryPlanCacheHitCount();
+        planMisses = statistics.getQueryPlanCacheMissCount();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        long hits = statistics.getQueryPlanCacheHitCount() - planHits;
+        long misses = statistics.getQueryPlanCacheMissCount() - planMisses;
+        System.out.println("names = " + names + ", query plan cache hit = " + hits + ", miss = " + misses
+                + ", hit ratio = " + (hits + misses == 0 ? 0 : hits * 100 / (hits + misses)) + "%");
+    }
+
+    // 청크 없이 한번에 바인딩 (기존 @Query findByNames)
+    @Benchmark
+    public int single(MemberDataset dataset) {
+        List<String> values = randomNames(dataset);
+        return dataset.tx.execute(status -> query(dataset, values).size());
+    }
+
+    @Benchmark
+    public int chunked(MemberDataset dataset) {
+        return inListExecutor.execute(randomNames(dataset), false, chunk -> query(dataset, chunk)).size();
+    }
+
+    @Benchmark
+    public int parallelChunks(MemberDataset dataset) {
+        return inListExecutor.execute(randomNames(dataset), true, chunk -> query(dataset, chunk)).size();
+    }
+
+    private List<Member> query(MemberDataset dataset, List<String> values) {
+        return dataset.em.createQuery("select m from Member m where m.username in :names", Member.class)
+                .setParameter("names", values)
+                .getResultList();
+    }
+
+    private List<String> randomNames(MemberDataset dataset) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int count = names / 2 + random.nextInt(names / 2 + 1);
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add("member" + random.nextInt(dataset.size));
+        }
+        return values;
+    }
+}
@@ -0,0 +1,90 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.entity.Item;
+import study.datajpa.repository.ItemRepository;
+import study.datajpa.repository.support.UlidGenerator;
+
+import javax.persistence.EntityManager;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-31
+ * Time: 20:30
+ **/
+
+/**
+ * Item insert 처리량: 시간순 ID(ULID) vs 랜덤 ID(UUID)
+ * - 랜덤 ID는 PK 인덱스의 중간 페이지에 삽입되기 때문에 페이지 분할이 자주 생기고 페이지가 반쯤 비게 된다.
+ * - 페이지 분할 정도는 trial이 끝날때 PK 인덱스 크기(DISK_SPACE_USED)로 비교한다. (row 수가 같으면 작을수록 페이지가 꽉 차있다)
+ * 롤백하면 인덱스 크기를 비교할수 없기 때문에 커밋한다. (ID 방식마다 fork가 다르기 때문에 DB도 따로 만들어진다)
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ItemIdBenchmark {
+
+    static final int BATCH = 1_000;
+
+    @Param({"ulid", "uuid"})
+    public String idType;
+
+    ConfigurableApplicationContext context;
+    ItemRepository itemRepository;
+    EntityManager em;
+    TransactionTemplate tx;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("jmh")
+                .run();
+        itemRepository = context.getBean(ItemRepository.class);
+        em = context.getBean(EntityManager.class);
+        tx = context.getBean(TransactionTemplate.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        Object[] stats = (Object[]) tx.execute(status -> em.createNativeQuery("select count(*), disk_space_used('ITEM') from item")
+                .getSingleResult());
+        System.out.println(idType + " rows = " + stats[0] + ", item table bytes = " + stats[1]);
+        context.close();
+    }
+
+    // saveAll 한번 = 트랜잭션 하나 (BATCH 건 insert)
+    @Benchmark
+    public int saveAll() {
+        List<Item> items = new ArrayList<>(BATCH);
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < BATCH; i++) {
+            items.add(new Item(nextId(), now));
+        }
+        return itemRepository.saveAll(items).size();
+    }
+
+    private String nextId() {
+        return "ulid".equals(idType) ? UlidGenerator.next() : UUID.randomUUID().toString();
+    }
+}
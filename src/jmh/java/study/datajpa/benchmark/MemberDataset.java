@@ -0,0 +1,106 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.DataJpaApplication;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberJpaRepository;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 15:02
+ **/
+
+/**
+ * 벤치마크 공통 데이터셋
+ * 임베디드 H2에 size 만큼의 회원을 저장한다. (팀 하나당 회원 100명, 나이는 0 ~ 99)
+ */
+@State(Scope.Benchmark)
+public class MemberDataset {
+
+    @Param({"10000", "100000"})
+    public int size;
+
+    public ConfigurableApplicationContext context;
+    public MemberRepository memberRepository;
+    public MemberJpaRepository memberJpaRepository;
+    public TeamRepository teamRepository;
+    public EntityManager em;
+    public TransactionTemplate tx;
+
+    private long minMemberId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(DataJpaApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("jmh")
+                .run();
+        memberRepository = context.getBean(MemberRepository.class);
+        memberJpaRepository = context.getBean(MemberJpaRepository.class);
+        teamRepository = context.getBean(TeamRepository.class);
+        em = context.getBean(EntityManager.class);
+        tx = context.getBean(TransactionTemplate.class);
+
+        List<Team> teams = new ArrayList<>();
+        for (int i = 0; i < size / 100 + 1; i++) {
+            teams.add(new Team("team" + i));
+        }
+        teamRepository.saveAll(teams);
+        memberRepository.saveAllBatched(members(teams), 1000);
+        minMemberId = em.createQuery("select min(m.id) from Member m where m.username like 'member%'", Long.class)
+                .getSingleResult();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    // 중간에 위치한 회원 (단건 조회 대상)
+    public String targetUsername() {
+        return "member" + size / 2;
+    }
+
+    // 데이터셋 회원의 id는 minMemberId 부터 연속으로 할당된다. (시퀀스 pooled)
+    public long minMemberId() {
+        return minMemberId;
+    }
+
+    // 데이터셋 전체를 메모리에 올리지 않도록 필요할때 하나씩 생성한다.
+    private Iterable<Member> members(List<Team> teams) {
+        return () -> new Iterator<Member>() {
+            int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public Member next() {
+                Member member = new Member("member" + index, index % 100, teams.get(index / 100));
+                index++;
+                return member;
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.KeysetCursor;
+import study.datajpa.repository.Window;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 16:25
+ **/
+
+/**
+ * 뒤쪽 페이지(전체의 90% 위치) 조회 비용 비교
+ * OFFSET 페이징은 앞의 row를 모두 읽고 버리지만, Keyset 페이징은 커서 이후만 읽는다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PagingBenchmark {
+
+    static final int PAGE_SIZE = 20;
+
+    @State(Scope.Benchmark)
+    public static class DeepPage {
+
+        int pageNumber;
+        String cursor;
+
+        @Setup(Level.Trial)
+        public void setUp(MemberDataset dataset) {
+            pageNumber = (int) (dataset.size * 0.9) / PAGE_SIZE;
+            Member last = dataset.em.createQuery("select m from Member m order by m.username desc, m.id desc", Member.class)
+                    .setFirstResult(pageNumber * PAGE_SIZE - 1)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            cursor = new KeysetCursor(last.getUsername(), last.getId()).encode();
+        }
+    }
+
+    @Benchmark
+    public Page<Member> offset(MemberDataset dataset, DeepPage deepPage) {
+        Sort sort = Sort.by(Sort.Direction.DESC, "username").and(Sort.by(Sort.Direction.DESC, "id"));
+        return dataset.memberRepository.findAll(PageRequest.of(deepPage.pageNumber, PAGE_SIZE, sort));
+    }
+
+    @Benchmark
+    public Window<Member> keyset(MemberDataset dataset, DeepPage deepPage) {
+        return dataset.memberRepository.findAllByKeyset(deepPage.cursor, PAGE_SIZE);
+    }
+}
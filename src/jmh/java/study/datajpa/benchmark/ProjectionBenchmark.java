@@ -0,0 +1,72 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberProjection;
+import study.datajpa.repository.NestedClosedProjections;
+import study.datajpa.repository.UserNameOnly;
+import study.datajpa.repository.UsernameOnlyDto;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-21
+ * Time: 15:55
+ **/
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ProjectionBenchmark {
+
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
+    // 기존 open projection 동작 (엔티티 전체 조회 + row 마다 SpEL 해석)
+    @Benchmark
+    public void springOpenProjection(MemberDataset dataset, Blackhole blackhole) {
+        for (Member member : dataset.memberRepository.findListByUsername(dataset.targetUsername())) {
+            blackhole.consume(projectionFactory.createProjection(UserNameOnly.class, member).getUsername());
+        }
+    }
+
+    // open projection (CompiledProjection: username, age 컬럼만 조회 + 컴파일된 SpEL)
+    @Benchmark
+    public void openProjection(MemberDataset dataset, Blackhole blackhole) {
+        for (UserNameOnly result : dataset.memberRepository.findProjectionsByUsername(dataset.targetUsername())) {
+            blackhole.consume(result.getUsername());
+        }
+    }
+
+    // class projection
+    @Benchmark
+    public void classProjection(MemberDataset dataset, Blackhole blackhole) {
+        for (UsernameOnlyDto result : dataset.memberRepository.findClazzProjectionsByUsername(dataset.targetUsername())) {
+            blackhole.consume(result.getUsername());
+        }
+    }
+
+    // 중첩 projection (team은 엔티티로 조회)
+    @Benchmark
+    public void nestedProjection(MemberDataset dataset, Blackhole blackhole) {
+        for (NestedClosedProjections result : dataset.memberRepository.findClazzDynamicProjectionsByUsername(dataset.targetUsername(), NestedClosedProjections.class)) {
+            blackhole.consume(result.getUsername());
+            blackhole.consume(result.getTeam().getName());
+        }
+    }
+
+    // native query projection (page 100건)
+    @Benchmark
+    public void nativeProjection(MemberDataset dataset, Blackhole blackhole) {
+        for (MemberProjection result : dataset.memberRepository.findByNativeProjection(PageRequest.of(0, 100))) {
+            blackhole.consume(result.getUsername());
+            blackhole.consume(result.getTeamName());
+        }
+    }
+}
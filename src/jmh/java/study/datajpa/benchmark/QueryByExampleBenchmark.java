@@ -0,0 +1,52 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import javax.persistence.criteria.JoinType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-27
+ * Time: 23:30
+ **/
+
+/**
+ * 같은 probe(username + team.name)로 기본 QueryByExampleExecutor vs ExampleCompiler 비교
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryByExampleBenchmark {
+
+    private static final ExampleMatcher IGNORE_AGE = ExampleMatcher.matching().withIgnorePaths("age");
+
+    @Benchmark
+    public List<Member> queryByExampleExecutor(MemberDataset dataset) {
+        return dataset.memberRepository.findAll(Example.of(probe(dataset), IGNORE_AGE));
+    }
+
+    @Benchmark
+    public List<Member> compiledInnerJoin(MemberDataset dataset) {
+        return dataset.memberRepository.findAllByExample(Example.of(probe(dataset)), JoinType.INNER);
+    }
+
+    @Benchmark
+    public List<Member> compiledLeftJoin(MemberDataset dataset) {
+        return dataset.memberRepository.findAllByExample(Example.of(probe(dataset)), JoinType.LEFT);
+    }
+
+    private Member probe(MemberDataset dataset) {
+        Member probe = new Member(dataset.targetUsername());
+        probe.setTeam(new Team("team" + (dataset.size / 2) / 100));
+        return probe;
+    }
+}
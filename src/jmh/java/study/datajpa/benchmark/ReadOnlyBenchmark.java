@@ -0,0 +1,42 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import study.datajpa.entity.Member;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-22
+ * Time: 14:20
+ **/
+
+/**
+ * 대량 조회 후 flush 까지의 비용 (관리 엔티티 vs @ReadOnlyQuery)
+ * 힙 사용량은 -prof gc 옵션으로 비교 (gc.alloc.rate.norm)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ReadOnlyBenchmark {
+
+    @Benchmark
+    public int managed(MemberDataset dataset) {
+        return dataset.tx.execute(status -> {
+            List<Member> members = dataset.em.createQuery("select m from Member m left join fetch m.team", Member.class)
+                    .getResultList();
+            dataset.em.flush(); // 모든 엔티티를 스냅샷과 비교
+            return members.size();
+        });
+    }
+
+    // 바깥 트랜잭션이 없어야 @ReadOnlyQuery가 읽기 전용 트랜잭션으로 실행된다. (커밋 시점에 flush 하지 않음)
+    @Benchmark
+    public int readOnly(MemberDataset dataset) {
+        return dataset.memberRepository.findMemberEntityGraph().size();
+    }
+}
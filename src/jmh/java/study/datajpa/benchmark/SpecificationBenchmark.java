@@ -0,0 +1,64 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.MemberSpec;
+import study.datajpa.repository.support.ShapedSpecification;
+import study.datajpa.repository.support.SpecificationCache;
+
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-26
+ * Time: 23:10
+ **/
+
+/**
+ * 같은 조건(username and teamName)을 매번 CriteriaQuery로 만드는 경우 vs SpecificationCache 재사용
+ * shapedSpecificationCold는 호출마다 새 SpecificationCache를 만들어서 캐시가 비어있을때 비용을 측정한다.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SpecificationBenchmark {
+
+    @Benchmark
+    public List<Member> lambdaSpecification(MemberDataset dataset) {
+        String username = dataset.targetUsername();
+        String teamName = teamName(dataset);
+        Specification<Member> spec = Specification.<Member>where((root, query, cb) -> cb.equal(root.get("username"), username))
+                .and((root, query, cb) -> {
+                    Join<Member, Team> team = root.join("team", JoinType.INNER);
+                    return cb.equal(team.get("name"), teamName);
+                });
+        return dataset.memberRepository.findAll(spec);
+    }
+
+    @Benchmark
+    public List<Member> shapedSpecification(MemberDataset dataset) {
+        Specification<Member> spec = MemberSpec.username(dataset.targetUsername()).and(MemberSpec.teamName(teamName(dataset)));
+        return dataset.memberRepository.findAll(spec);
+    }
+
+    // 캐시가 비어있는 경우 (shape 별 첫 실행): CriteriaQuery를 만들고 JPQL, 파라메터 이름을 캐시하는 비용까지 포함
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Member> shapedSpecificationCold(MemberDataset dataset) {
+        ShapedSpecification<Member> spec = (ShapedSpecification<Member>) MemberSpec.username(dataset.targetUsername())
+                .and(MemberSpec.teamName(teamName(dataset)));
+        return new SpecificationCache(dataset.em).createQuery(Member.class, spec).getResultList();
+    }
+
+    private String teamName(MemberDataset dataset) {
+        return "team" + (dataset.size / 2) / 100;
+    }
+}
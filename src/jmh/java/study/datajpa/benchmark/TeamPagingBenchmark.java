@@ -0,0 +1,77 @@
+package study.datajpa.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-03
+ * Time: 21:10
+ **/
+
+/**
+ * 팀 + 회원 목록 페이징 (팀 20개 = 회원 2,000명, 가운데 페이지)
+ * - twoPhase: id 페이징 후 in (...) fetch join (TeamRepository.findAllWithMembers)
+ * - inMemory: 컬렉션 fetch join + setMaxResults -> 전체 팀/회원을 조회한 뒤 메모리에서 페이징 (HHH000104)
+ * - lazy: 팀만 페이징하고 회원은 지연로딩 (default_batch_fetch_size 만큼 in (...) 으로 묶여서 조회, 없으면 N + 1)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class TeamPagingBenchmark {
+
+    static final int PAGE_SIZE = 20;
+
+    @Benchmark
+    public void twoPhase(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            consume(dataset.teamRepository.findAllWithMembers(middlePage(dataset)).getContent(), blackhole);
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void inMemory(MemberDataset dataset, Blackhole blackhole) {
+        Pageable pageable = middlePage(dataset);
+        dataset.tx.execute(status -> {
+            List<Team> teams = dataset.em.createQuery("select distinct t from Team t left join fetch t.members order by t.id", Team.class)
+                    .setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize())
+                    .getResultList();
+            consume(teams, blackhole);
+            return null;
+        });
+    }
+
+    @Benchmark
+    public void lazy(MemberDataset dataset, Blackhole blackhole) {
+        dataset.tx.execute(status -> {
+            consume(dataset.teamRepository.findAll(middlePage(dataset)).getContent(), blackhole);
+            return null;
+        });
+    }
+
+    private Pageable middlePage(MemberDataset dataset) {
+        int teams = dataset.size / 100;
+        return PageRequest.of(teams / PAGE_SIZE / 2, PAGE_SIZE, Sort.by("id"));
+    }
+
+    private void consume(List<Team> teams, Blackhole blackhole) {
+        for (Team team : teams) {
+            for (Member member : team.getMembers()) {
+                blackhole.consume(member.getUsername());
+            }
+        }
+    }
+}
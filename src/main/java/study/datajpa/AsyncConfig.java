@@ -0,0 +1,74 @@
+package study.datajpa;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.task.TaskDecorator;
+import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import study.datajpa.monitor.ConnectionHoldMetrics;
+import study.datajpa.monitor.QueryCounter;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-28
+ * Time: 14:10
+ **/
+
+/**
+ * 리포지토리 비동기 메서드(@Async)를 실행하는 DB 전용 스레드풀
+ * - 스레드 수 = 커넥션 풀 크기 (스레드가 더 많아도 커넥션을 기다리기만 한다)
+ * - 큐가 가득 차면 RejectedExecutionException (컨트롤러에서 503으로 응답해서 클라이언트가 재시도 하도록)
+ *   톰캣 스레드에서 대신 실행(CallerRunsPolicy)하면 비동기로 바꾼 의미가 없다.
+ *
+ * 청크(ChunkedBulkUpdater, InListExecutor)를 동시에 실행하는 스레드풀은 따로 둔다.
+ * - 청크 작업이 리포지토리 스레드풀을 모두 차지해서 API 요청이 503을 받지 않도록
+ * - 스레드 수는 커넥션 풀 크기보다 작게 (나머지 커넥션은 API 요청이 사용)
+ */
+@EnableAsync
+@Configuration
+public class AsyncConfig {
+
+    public static final String REPOSITORY_EXECUTOR = "repositoryExecutor";
+    public static final String CHUNK_EXECUTOR = "chunkExecutor";
+
+    @Primary // 이름을 지정하지 않고 주입받으면 리포지토리 스레드풀
+    @Bean(REPOSITORY_EXECUTOR)
+    public ThreadPoolTaskExecutor repositoryExecutor(@Value("${spring.datasource.hikari.maximum-pool-size:10}") int poolSize,
+                                                     @Value("${datajpa.async.queue-capacity:200}") int queueCapacity,
+                                                     ConnectionHoldMetrics connectionHoldMetrics) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("repository-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setTaskDecorator(decorator(connectionHoldMetrics));
+        return executor;
+    }
+
+    @Bean(CHUNK_EXECUTOR)
+    public ThreadPoolTaskExecutor chunkExecutor(@Value("${datajpa.chunk.parallelism:4}") int parallelism,
+                                                @Value("${datajpa.chunk.queue-capacity:100}") int queueCapacity,
+                                                ConnectionHoldMetrics connectionHoldMetrics) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parallelism);
+        executor.setMaxPoolSize(parallelism);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("chunk-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setTaskDecorator(decorator(connectionHoldMetrics));
+        return executor;
+    }
+
+    // 커넥션 점유 시간, 실행한 쿼리 수를 요청한 API(스레드)로 집계
+    private static TaskDecorator decorator(ConnectionHoldMetrics connectionHoldMetrics) {
+        return task -> connectionHoldMetrics.propagate(QueryCounter.propagate(task));
+    }
+}
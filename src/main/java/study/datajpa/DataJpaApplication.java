@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 @EnableJpaAuditing
 @SpringBootApplication
@@ -24,6 +25,11 @@ public class DataJpaApplication {
     public AuditorAware<String> auditorProvider() {
         // AuditorAware의 getCurrentAware를 구현한다.
         // 여기서 리턴해주는 값을 @CreatedBy, @LastModifiedBy 의 값에 세팅해준다.
-        return () -> Optional.of(UUID.randomUUID().toString());
+        // UUID.randomUUID()는 SecureRandom을 사용하기 때문에 동시 호출이 많으면 경합이 생긴다. -> ThreadLocalRandom
+        // (예제용 작성자 값이기 때문에 예측 불가능할 필요는 없다)
+        return () -> {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return Optional.of(new UUID(random.nextLong(), random.nextLong()).toString());
+        };
     }
 }
@@ -0,0 +1,62 @@
+package study.datajpa;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.datajpa.repository.support.ReplicaRouter;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-01
+ * Time: 20:50
+ **/
+
+/**
+ * 읽기/쓰기 DataSource 분리 (datajpa.routing.enabled=true)
+ * - primary: spring.datasource
+ * - replica: datajpa.routing.replica-urls (계정은 primary와 같다)
+ * DataSource 빈을 직접 등록하기 때문에 DataSourceAutoConfiguration은 적용되지 않는다.
+ */
+@Configuration
+@ConditionalOnProperty(name = "datajpa.routing.enabled", havingValue = "true")
+public class DataSourceRoutingConfig {
+
+    @Bean
+    public ReplicaRouter replicaRouter(DataSourceProperties properties,
+                                       @Value("${datajpa.routing.replica-urls}") String[] replicaUrls,
+                                       @Value("${spring.datasource.hikari.maximum-pool-size:10}") int primaryPoolSize,
+                                       @Value("${datajpa.routing.replica-pool-size:10}") int replicaPoolSize,
+                                       @Value("${datajpa.routing.max-lag:5s}") Duration maxLag,
+                                       @Value("${datajpa.routing.lag-check-interval:1s}") Duration lagCheckInterval) {
+        HikariDataSource primary = pool(properties, properties.determineUrl(), ReplicaRouter.PRIMARY, primaryPoolSize);
+        List<HikariDataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.length; i++) {
+            replicas.add(pool(properties, replicaUrls[i].trim(), "replica-" + i, replicaPoolSize));
+        }
+        return new ReplicaRouter(primary, replicas, maxLag, lagCheckInterval);
+    }
+
+    @Bean
+    public DataSource dataSource(ReplicaRouter replicaRouter) {
+        return replicaRouter.dataSource();
+    }
+
+    private HikariDataSource pool(DataSourceProperties properties, String url, String poolName, int poolSize) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        pool.setPoolName(poolName);
+        pool.setMaximumPoolSize(poolSize);
+        return pool;
+    }
+}
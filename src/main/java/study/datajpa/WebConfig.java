@@ -0,0 +1,28 @@
+package study.datajpa;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import study.datajpa.monitor.ConnectionHoldInterceptor;
+import study.datajpa.monitor.NPlusOneDetectInterceptor;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-18
+ * Time: 21:05
+ **/
+@Configuration
+@RequiredArgsConstructor
+public class WebConfig implements WebMvcConfigurer {
+
+    private final NPlusOneDetectInterceptor nPlusOneDetectInterceptor;
+    private final ConnectionHoldInterceptor connectionHoldInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(nPlusOneDetectInterceptor);
+        registry.addInterceptor(connectionHoldInterceptor);
+    }
+}
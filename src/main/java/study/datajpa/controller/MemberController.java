@@ -2,19 +2,32 @@ package study.datajpa.controller;
 
 import lombok.RequiredArgsConstructor;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.mapping.PropertyReferenceException;
 import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
+import study.datajpa.repository.KeysetCursor;
 import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.Window;
 
 import javax.annotation.PostConstruct;
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Created by IntelliJ IDEA.
@@ -22,24 +35,46 @@ import java.util.Optional;
  * Date: 2020-03-08
  * Time: 20:15
  **/
+
+/**
+ * OSIV를 사용하지 않기 때문에(spring.jpa.open-in-view: false) API 마다 필요한 데이터를 리포지토리에서 모두 조회해야 한다.
+ * 각 API의 fetch plan 주석 참고. 트랜잭션 밖에서 지연로딩을 하면 LazyLoadingAdvice가 로그를 남긴다.
+ */
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    static final int MAX_KEYSET_SIZE = 100;
+
     private final MemberRepository memberRepository;
+    private final AsyncTaskExecutor repositoryExecutor; // AsyncConfig.REPOSITORY_EXECUTOR
 
     @PostConstruct
     public void init() {
-        memberRepository.save(new Member("userA"));
+        // save를 반복 호출하면 insert 마다 트랜잭션, 쿼리가 하나씩 발생한다.
+        List<Member> members = new ArrayList<>();
+        members.add(new Member("userA"));
         for (int i = 0; i < 100; i++) {
-            memberRepository.save(new Member("user" + i));
+            members.add(new Member("user" + i));
         }
+        memberRepository.saveAllBatched(members, 50);
     }
 
+    /*
+        CompletableFuture를 반환하면 서블릿 비동기 처리(Servlet 3.0 async)로 동작한다.
+        -> 조회하는 동안 톰캣 스레드를 반환하기 때문에 톰캣 스레드 수보다 많은 요청을 동시에 처리할 수 있다.
+        -> 실제 동시 조회 수는 DB 스레드풀(커넥션 풀 크기)로 제한된다.
+     */
+    // fetch plan: Member (연관관계 없음)
     @GetMapping("/members/{id}")
-    public String findMember(@PathVariable Long id) {
-        Optional<Member> optionalMember = memberRepository.findById(id);
-        return optionalMember.get().getUsername();
+    public CompletableFuture<String> findMember(@PathVariable Long id) {
+        return memberRepository.findByIdAsync(id)
+                .thenApply(member -> {
+                    if (member == null) {
+                        throw new NoSuchElementException("No value present");
+                    }
+                    return member.getUsername();
+                });
     }
 
     /*
@@ -49,21 +84,66 @@ public class MemberController {
         도메인 클래스 컨버터로 엔티티를 파라메터로 받으면 단순 조회용으로만 사용해야한다.
         -> 트랜잭션 범위가 없는 케이스에서 조회 했기 때문에 엔티티를 수정하여도 DB에 반영되지 않음
      */
+    // fetch plan: Member (연관관계 없음)
     @GetMapping("/members2/{id}")
     public String findMember2(@PathVariable("id") Member member) {
         return member.getUsername();
     }
 
     // Page 타입은 그대로 사용해도 좋음
+    // fetch plan: MemberDto projection (member left join team)
     @GetMapping("/members")
-    public Page<MemberDto> list(@PageableDefault(size = 5) Pageable pageable,
-                             @Qualifier("member") Pageable memberPageable,
-                             @Qualifier("order") Pageable orderPageable) {
+    public CompletableFuture<Page<MemberDto>> list(@PageableDefault(size = 5) Pageable pageable,
+                                                   @Qualifier("member") Pageable memberPageable,
+                                                   @Qualifier("order") Pageable orderPageable) {
         Pageable request = PageRequest.of(1, 2);
         // Pageable 파라메터를 받을수 있도록 지원 (페이지에 관련된 정보)
         // 인터페이스로 받지만, 스프링부트가 구현체로 받게끔 해준다.
-        Page<Member> page = memberRepository.findAll(pageable);
-        Page<MemberDto> map = page.map(member -> new MemberDto(member.getId(), member.getUsername(), null));
-        return map;
+        // 엔티티를 조회해서 DTO로 변환하지 않고 DTO로 바로 조회한다.
+        return CompletableFuture.supplyAsync(() -> memberRepository.findMemberDtoPage(pageable), repositoryExecutor);
+    }
+
+    // OFFSET 페이징은 뒤 페이지로 갈수록 느려지기 때문에 더보기(무한스크롤) 방식은 Keyset 페이징을 사용
+    // 응답의 nextCursor를 다음 요청의 cursor로 넘겨주면 된다.
+    // fetch plan: Member (연관관계 없음, teamName은 null)
+    @GetMapping("/members/keyset")
+    public CompletableFuture<Window<MemberDto>> keysetList(@RequestParam(required = false) String cursor,
+                                                           @RequestParam(defaultValue = "10") int size) {
+        // limit + 1 개를 조회하기 때문에 size 상한이 없으면 한 요청으로 테이블 전체를 읽을 수 있다.
+        if (size < 1 || size > MAX_KEYSET_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "size는 1 ~ " + MAX_KEYSET_SIZE + " 사이여야 합니다.");
+        }
+        // 잘못된 커서는 비동기 작업 안에서 실패하면 500이 되기 때문에 repositoryExecutor에 넘기기 전에 검증한다.
+        if (cursor != null) {
+            try {
+                KeysetCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+            }
+        }
+        return CompletableFuture.supplyAsync(() -> memberRepository.findAllByKeyset(cursor, size), repositoryExecutor)
+                .thenApply(window -> window.map(member -> new MemberDto(member.getId(), member.getUsername(), null)));
+    }
+
+    // fetch plan: Member + team (EntityGraph) -> 트랜잭션이 끝난 뒤 MemberDto(Member)에서 team.name에 접근
+    @GetMapping("/members/{id}/detail")
+    public CompletableFuture<MemberDto> detail(@PathVariable Long id) {
+        return CompletableFuture.supplyAsync(() -> memberRepository.findWithTeamById(id)
+                .map(MemberDto::new)
+                .orElseThrow(() -> new NoSuchElementException("No value present")), repositoryExecutor);
+    }
+
+    // 정렬할 수 없는 속성으로 sort를 요청한 경우 (ex. /members?sort=age)
+    @ExceptionHandler(PropertyReferenceException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public String invalidSort(PropertyReferenceException e) {
+        return e.getMessage();
+    }
+
+    // DB 스레드풀이 가득 찬 경우 (backpressure)
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public String rejected() {
+        return "busy";
     }
 }
@@ -0,0 +1,117 @@
+package study.datajpa.controller;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import study.datajpa.monitor.ConnectionHoldMetrics;
+import study.datajpa.monitor.RepositoryMetricsAspect;
+import study.datajpa.repository.support.ConflictRetryExecutor;
+import study.datajpa.repository.support.ReplicaRouter;
+import study.datajpa.repository.support.SingleFlight;
+import study.datajpa.repository.support.SingleFlightAspect;
+import study.datajpa.repository.support.SpecificationCache;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-17
+ * Time: 22:10
+ **/
+@RestController
+@RequiredArgsConstructor
+public class StatsController {
+
+    private final EntityManagerFactory emf;
+    private final ObjectProvider<RepositoryMetricsAspect> repositoryMetrics; // datajpa.metrics.enabled=false 이면 없음
+    private final SpecificationCache specificationCache;
+    private final SingleFlightAspect singleFlightAspect;
+    private final ConflictRetryExecutor conflictRetryExecutor;
+    private final ObjectProvider<ReplicaRouter> replicaRouter; // datajpa.routing.enabled=false 이면 없음
+    private final ConnectionHoldMetrics connectionHoldMetrics;
+
+    // 리포지토리 메서드별 호출 수, 지연시간(p50, p99), row 수, 실행 쿼리 수
+    @GetMapping("/stats/repository")
+    public Map<String, Map<String, Object>> repository() {
+        RepositoryMetricsAspect metrics = repositoryMetrics.getIfAvailable();
+        return metrics == null ? Collections.emptyMap() : metrics.snapshot();
+    }
+
+    // Specification shape 별 재사용 횟수, 최초 컴파일 시간
+    @GetMapping("/stats/specification")
+    public Map<String, Map<String, Object>> specification() {
+        return specificationCache.snapshot();
+    }
+
+    // findById/findOneByUsername 실제 실행 수, 다른 요청의 조회 결과를 같이 받은 수
+    @GetMapping("/stats/single-flight")
+    public Map<String, Long> singleFlight() {
+        SingleFlight singleFlight = singleFlightAspect.getSingleFlight();
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("executed", singleFlight.getExecuted());
+        result.put("coalesced", singleFlight.getCoalesced());
+        result.put("inFlight", (long) singleFlight.getInFlight());
+        return result;
+    }
+
+    // @RetryOnConflict 호출 수, 낙관적 락 충돌 수, 재시도 수, 재시도 횟수를 모두 소진한 수
+    @GetMapping("/stats/retry")
+    public Map<String, Long> retry() {
+        return conflictRetryExecutor.snapshot();
+    }
+
+    // primary/replica 커넥션 풀 상태(active, idle, waiting), 라우팅 수, replica 지연
+    @GetMapping("/stats/datasource")
+    public Map<String, Map<String, Object>> datasource() {
+        ReplicaRouter router = replicaRouter.getIfAvailable();
+        return router == null ? Collections.emptyMap() : router.snapshot();
+    }
+
+    // API 별 커넥션 점유 시간(평균, p50, p99, 최대), 트랜잭션 밖 지연로딩 발생 수
+    @GetMapping("/stats/connections")
+    public Map<String, Map<String, Object>> connections() {
+        return connectionHoldMetrics.snapshot();
+    }
+
+    // 2차 캐시 리전별 hit/miss/put, 쿼리 캐시 hit/miss
+    @GetMapping("/stats/cache")
+    public Map<String, Object> cache() {
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        for (String regionName : statistics.getSecondLevelCacheRegionNames()) {
+            CacheRegionStatistics region = statistics.getDomainDataRegionStatistics(regionName);
+            Map<String, Long> regionStats = new LinkedHashMap<>();
+            regionStats.put("hit", region.getHitCount());
+            regionStats.put("miss", region.getMissCount());
+            regionStats.put("put", region.getPutCount());
+            regionStats.put("elements", region.getElementCountInMemory());
+            result.put(regionName, regionStats);
+        }
+
+        Map<String, Long> queryStats = new LinkedHashMap<>();
+        queryStats.put("hit", statistics.getQueryCacheHitCount());
+        queryStats.put("miss", statistics.getQueryCacheMissCount());
+        queryStats.put("put", statistics.getQueryCachePutCount());
+        result.put("query", queryStats);
+
+        // HQL -> SQL 변환 결과 캐시 (in 절 값 수가 다르면 다른 쿼리로 취급)
+        Map<String, Long> queryPlanStats = new LinkedHashMap<>();
+        queryPlanStats.put("hit", statistics.getQueryPlanCacheHitCount());
+        queryPlanStats.put("miss", statistics.getQueryPlanCacheMissCount());
+        result.put("queryPlan", queryPlanStats);
+
+        // 실제로 DB에 나간 쿼리 수와 비교
+        result.put("queryExecutionCount", statistics.getQueryExecutionCount());
+        result.put("entityLoadCount", statistics.getEntityLoadCount());
+        return result;
+    }
+}
@@ -35,6 +35,6 @@ public class MemberDto {
     public MemberDto(Member member) {
         this.id = member.getId();
         this.username = member.getUsername();
-        this.teamName = member.getTeam().getName();
+        this.teamName = member.getTeam() == null ? null : member.getTeam().getName(); // team을 같이 조회해야 한다. (EntityGraph)
     }
 }
@@ -0,0 +1,30 @@
+package study.datajpa.entity;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.time.LocalDateTime;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-30
+ * Time: 20:10
+ **/
+
+/**
+ * 트랜잭션 하나에서 사용하는 작성자/시간 (AuditStampProvider)
+ * 같은 트랜잭션에서 저장/수정한 엔티티는 모두 같은 작성자, 같은 시간을 가진다.
+ */
+@Getter
+@ToString
+public class AuditStamp {
+
+    private final String auditor;
+    private final LocalDateTime time;
+
+    public AuditStamp(String auditor, LocalDateTime time) {
+        this.auditor = auditor;
+        this.time = time;
+    }
+}
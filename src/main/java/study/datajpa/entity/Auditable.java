@@ -0,0 +1,20 @@
+package study.datajpa.entity;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-30
+ * Time: 20:15
+ **/
+
+/**
+ * Auditing 필드를 리플렉션 없이 직접 설정한다. (AuditStampListener)
+ * AuditingEntityListener는 엔티티마다 @CreatedDate 등의 필드를 리플렉션으로 찾아서 설정한다.
+ */
+public interface Auditable {
+
+    // 저장할때 생성일/수정일을 같은 값으로 설정 (AuditingEntityListener의 modifyOnCreate와 동일)
+    void stampCreated(AuditStamp stamp);
+
+    void stampModified(AuditStamp stamp);
+}
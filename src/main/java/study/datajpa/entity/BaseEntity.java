@@ -3,10 +3,8 @@ package study.datajpa.entity;
 import lombok.Getter;
 import org.springframework.data.annotation.CreatedBy;
 import org.springframework.data.annotation.LastModifiedBy;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 
 import javax.persistence.Column;
-import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
 
 /**
@@ -18,8 +16,8 @@ import javax.persistence.MappedSuperclass;
 
 /**
  * JpaBaseEntity와 동일하게 동작한다.
+ * 리스너는 BaseTimeEntity의 AuditStampListener를 상속받는다.
  */
-@EntityListeners(AuditingEntityListener.class)
 @MappedSuperclass
 @Getter
 public class BaseEntity extends BaseTimeEntity {
@@ -30,4 +28,17 @@ public class BaseEntity extends BaseTimeEntity {
 
     @LastModifiedBy
     private String lastModifiedBy;
+
+    @Override
+    public void stampCreated(AuditStamp stamp) {
+        super.stampCreated(stamp);
+        this.createdBy = stamp.getAuditor();
+        this.lastModifiedBy = stamp.getAuditor();
+    }
+
+    @Override
+    public void stampModified(AuditStamp stamp) {
+        super.stampModified(stamp);
+        this.lastModifiedBy = stamp.getAuditor();
+    }
 }
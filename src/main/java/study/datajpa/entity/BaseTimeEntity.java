@@ -3,7 +3,7 @@ package study.datajpa.entity;
 import lombok.Getter;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.annotation.LastModifiedDate;
-import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import study.datajpa.repository.support.AuditStampListener;
 
 import javax.persistence.EntityListeners;
 import javax.persistence.MappedSuperclass;
@@ -15,14 +15,26 @@ import java.time.LocalDateTime;
  * Date: 2020-03-08
  * Time: 19:31
  **/
-@EntityListeners(AuditingEntityListener.class)
+// AuditingEntityListener 대신 AuditStampListener (datajpa.auditing.batched=false 이면 AuditingEntityListener와 동일하게 동작)
+@EntityListeners(AuditStampListener.class)
 @MappedSuperclass
 @Getter
-public class BaseTimeEntity {
+public class BaseTimeEntity implements Auditable {
 
     @CreatedDate
     private LocalDateTime createdDate;
 
     @LastModifiedDate
     private LocalDateTime lastModifiedDate;
+
+    @Override
+    public void stampCreated(AuditStamp stamp) {
+        this.createdDate = stamp.getTime();
+        this.lastModifiedDate = stamp.getTime();
+    }
+
+    @Override
+    public void stampModified(AuditStamp stamp) {
+        this.lastModifiedDate = stamp.getTime();
+    }
 }
@@ -6,11 +6,15 @@ import lombok.NoArgsConstructor;
 import org.springframework.data.annotation.CreatedDate;
 import org.springframework.data.domain.Persistable;
 import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import study.datajpa.repository.support.UlidGenerator;
 
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.EntityListeners;
-import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.PostLoad;
+import javax.persistence.PostPersist;
+import javax.persistence.Transient;
 import java.time.LocalDateTime;
 
 /**
@@ -25,19 +29,40 @@ import java.time.LocalDateTime;
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 public class Item implements Persistable<String> {
 
-    @Id @GeneratedValue
+    // @GeneratedValue 대신 생성자에서 시간순 ID(ULID)를 할당한다.
+    // -> persist 전에 ID를 알수 있고, 시퀀스 조회 없이 JDBC batch insert가 가능하다.
+    @Id
+    @Column(length = 36) // ULID(26자), 외부에서 받은 UUID(36자)
     private String id;
 
     @CreatedDate
     private LocalDateTime createdAt;
 
+    // 생성자로 만든 엔티티만 새 엔티티 (DB에서 조회했거나 저장한 엔티티는 false)
+    @Transient
+    private boolean isNew = true;
+
     public Item(LocalDateTime createdAt) {
+        this(UlidGenerator.next(), createdAt);
+    }
+
+    // 채번 테이블 등 외부에서 ID를 받아오는 경우
+    public Item(String id, LocalDateTime createdAt) {
+        this.id = id;
         this.createdAt = createdAt;
     }
 
     @Override
     public boolean isNew() {
-        // 생성일이 null 일 경우 새로운 엔티티로 판단하도록 엔티티 식별 로직을 구현
-        return createdAt == null;
+        // ID를 직접 할당하면 id == null 로 새 엔티티를 판단할수 없다.
+        // 생성일(createdAt)로 판단하면 생성일을 지정해서 만든 엔티티가 merge(select 후 insert)된다.
+        // -> 생성자로 만든 엔티티는 항상 persist (select 없이 insert)
+        return isNew;
+    }
+
+    @PostPersist
+    @PostLoad
+    void markNotNew() {
+        this.isNew = false;
     }
 }
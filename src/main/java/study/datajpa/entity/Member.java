@@ -1,6 +1,8 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import javax.persistence.*;
 
@@ -16,17 +18,35 @@ import javax.persistence.*;
 @ToString(of = { "id", "username", "age" }) // 연관관계 필드는 무한루프에 빠질수 있기때문에 ToString대상에서 제외할것
 @NamedQuery(
         name = "Member.findByUsername",
-        query = "select m from Member m where m.username = :username"
+        query = "select m from Member m where m.username = :username",
+        hints = @QueryHint(name = "org.hibernate.cacheable", value = "true") // 쿼리 캐시 (결과 식별자만 캐시)
 )
 @NamedEntityGraph(name = "Member.All", attributeNodes = @NamedAttributeNode("team"))
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = @Index(name = "idx_member_username", columnList = "username")) // username 조건 조회가 가장 많다.
+@SequenceGenerator(
+        name = "MEMBER_SEQ_GENERATOR",
+        sequenceName = "member_seq",
+        allocationSize = 50 // 시퀀스를 한번 조회할때 50개씩 미리 할당받는다. (pooled optimizer)
+)
 public class Member extends BaseEntity {
 
-    @Id @GeneratedValue
+    // 시퀀스 전략을 명시하고 allocationSize를 늘려서 persist 마다 시퀀스를 조회하지 않도록 한다.
+    // IDENTITY 전략은 insert를 해야 PK를 알수 있기 때문에 JDBC batch insert가 불가능하다.
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "MEMBER_SEQ_GENERATOR")
     @Column(name = "member_id")
     private Long id;
     private String username;
     private int age;
 
+    // 낙관적 락: update 마다 version을 증가시키고 where 조건에 이전 version을 넣는다.
+    // 다른 트랜잭션이 먼저 수정했다면 update row 수가 0 이므로 OptimisticLockException
+    // Long(wrapper)이어야 Spring data JPA가 version == null 로 새 엔티티를 판단한다.
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
     // 연관관계는 반드시 LAZY로 지정
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
@@ -47,8 +67,12 @@ public class Member extends BaseEntity {
         this.age = age;
     }
 
+    // 양쪽 팀의 members 컬렉션을 초기화하지 않는다. (Team.addMember, Team.removeMember)
     public void changeTeam(Team team) {
+        if (this.team != null) {
+            this.team.removeMember(this);
+        }
         this.team = team;
-        team.getMembers().add(this);
+        team.addMember(this);
     }
 }
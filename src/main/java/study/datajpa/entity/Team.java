@@ -1,10 +1,18 @@
 package study.datajpa.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.OptimisticLock;
 
 import javax.persistence.*;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Created by IntelliJ IDEA.
@@ -16,17 +24,83 @@ import java.util.List;
 @Getter @Setter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = { "id", "name" })
+// 2차 캐시 (리전 설정은 ehcache.xml)
+// 벌크 연산(JPQL update)은 Hibernate가 해당 엔티티 리전을 자동으로 무효화한다.
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@SequenceGenerator(
+        name = "TEAM_SEQ_GENERATOR",
+        sequenceName = "team_seq",
+        allocationSize = 50
+)
 public class Team {
 
-    @Id @GeneratedValue
+    // Member와 동일하게 batch insert가 가능한 시퀀스 전략 사용
+    @Id @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "TEAM_SEQ_GENERATOR")
     @Column(name = "team_id")
     private Long id;
     private String name;
 
+    // Member와 동일하게 낙관적 락 사용
+    @Version
+    @Setter(AccessLevel.NONE)
+    private Long version;
+
+    // 팀원이 수만명인 팀이 있기 때문에 컬렉션을 초기화하지 않고 다룬다.
+    // - EXTRA: size(), contains()는 select count 쿼리로 처리 (팀원 엔티티를 만들지 않는다.)
+    // - mappedBy(연관관계 주인이 아닌쪽) + List(bag): 초기화 전의 add()는 큐에 쌓아두고 나중에 컬렉션이 로딩될때 반영된다.
+    // - 팀원 변경은 team 테이블을 수정하지 않기 때문에 version을 증가시키지 않는다. (같은 팀으로 동시에 옮길때 충돌하지 않도록)
     @OneToMany(mappedBy = "team")
+    @OptimisticLock(excluded = true)
+    @LazyCollection(LazyCollectionOption.EXTRA)
     private List<Member> members = new ArrayList<>();
 
+    // 로딩되지 않은 컬렉션에서 제거한 팀원 (bag은 remove()를 큐에 쌓지 않는다)
+    // flush 전에는 DB에 아직 이 팀의 팀원으로 남아있기 때문에 count, 컬렉션 로딩에 직접 반영한다.
+    @Transient
+    @Getter(AccessLevel.NONE) @Setter(AccessLevel.NONE)
+    private Set<Member> removedMembers = new HashSet<>();
+
     public Team(String name) {
         this.name = name;
     }
+
+    // 연관관계 편의 메서드 (Member.changeTeam)
+    public void addMember(Member member) {
+        removedMembers.remove(member);
+        members.add(member);
+    }
+
+    // bag의 remove()는 컬렉션 전체를 초기화하기 때문에 로딩되지 않은 경우에는 제거할 팀원만 기록해둔다.
+    public void removeMember(Member member) {
+        if (Hibernate.isInitialized(members)) {
+            members.remove(member);
+        } else {
+            removedMembers.add(member);
+        }
+    }
+
+    // 제거 대기중인 팀원이 있으면 컬렉션을 로딩해서 제거한다. (flush 전이면 로딩된 컬렉션에 포함되어 있다)
+    public List<Member> getMembers() {
+        if (!removedMembers.isEmpty()) {
+            members.removeAll(removedMembers);
+            removedMembers.clear();
+        }
+        return members;
+    }
+
+    // 팀원 수 (EXTRA: 컬렉션이 로딩되지 않았으면 count 쿼리)
+    // count 쿼리는 이 컬렉션에 큐에 쌓인 add가 있을때만 flush 하기 때문에 제거한 팀원이 DB에 남아있으면 빼준다.
+    public int getMemberCount() {
+        if (removedMembers.isEmpty() || Hibernate.isInitialized(members)) {
+            return getMembers().size();
+        }
+        int count = members.size();
+        for (Member removed : removedMembers) {
+            if (members.contains(removed)) { // exists 쿼리 (count와 같은 flush 상태에서 조회)
+                count--;
+            }
+        }
+        return count;
+    }
 }
@@ -0,0 +1,41 @@
+package study.datajpa.monitor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-02
+ * Time: 20:40
+ **/
+// 요청을 처리하는 스레드에 endpoint를 설정한다. (ConnectionHoldMetrics)
+@Component
+public class ConnectionHoldInterceptor implements AsyncHandlerInterceptor {
+
+    private final ConnectionHoldMetrics metrics;
+
+    public ConnectionHoldInterceptor(ConnectionHoldMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        metrics.enter(ConnectionHoldMetrics.endpoint(request));
+        return true;
+    }
+
+    // 비동기 처리(CompletableFuture)가 시작되면 톰캣 스레드를 반환한다. (결과는 다시 dispatch 되면서 preHandle 부터 호출)
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        metrics.exit();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        metrics.exit();
+    }
+}
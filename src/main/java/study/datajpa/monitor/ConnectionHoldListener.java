@@ -0,0 +1,53 @@
+package study.datajpa.monitor;
+
+import com.p6spy.engine.common.ConnectionInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-02
+ * Time: 20:30
+ **/
+// 커넥션을 가져온 시점부터 반환(close)할때까지의 시간을 endpoint 별로 기록 (ConnectionHoldMetrics)
+@Component
+public class ConnectionHoldListener extends JdbcEventListener {
+
+    private final ConnectionHoldMetrics metrics;
+    private final Map<ConnectionInformation, Hold> holds = new ConcurrentHashMap<>();
+
+    public ConnectionHoldListener(ConnectionHoldMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void onAfterGetConnection(ConnectionInformation connectionInformation, SQLException e) {
+        String endpoint = metrics.currentEndpoint();
+        if (e == null && endpoint != null) { // 요청 밖(시작시 초기화, 스케줄러 등)에서 가져온 커넥션은 제외
+            holds.put(connectionInformation, new Hold(endpoint, System.nanoTime()));
+        }
+    }
+
+    @Override
+    public void onAfterConnectionClose(ConnectionInformation connectionInformation, SQLException e) {
+        Hold hold = holds.remove(connectionInformation);
+        if (hold != null) {
+            metrics.recordHold(hold.endpoint, (System.nanoTime() - hold.startNanos) / 1_000);
+        }
+    }
+
+    private static class Hold {
+        private final String endpoint;
+        private final long startNanos;
+
+        private Hold(String endpoint, long startNanos) {
+            this.endpoint = endpoint;
+            this.startNanos = startNanos;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package study.datajpa.monitor;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-02
+ * Time: 20:10
+ **/
+
+/**
+ * API(endpoint) 별 JDBC 커넥션 점유 시간, 트랜잭션 밖 지연로딩 발생 수
+ * - 커넥션을 가져온 스레드의 endpoint로 집계한다. (ConnectionHoldInterceptor가 설정, repositoryExecutor로 전파)
+ * - OSIV를 켜면 커넥션을 JSON 변환이 끝날때까지 들고 있기 때문에 점유 시간 ≒ 요청 처리 시간
+ *   끄면 트랜잭션(리포지토리 호출) 동안만 점유한다.
+ * 필요한 커넥션 풀 크기 ≒ 초당 요청 수 * 평균 점유 시간
+ */
+@Component
+public class ConnectionHoldMetrics {
+
+    private final ThreadLocal<String> currentEndpoint = new ThreadLocal<>();
+    private final Map<String, EndpointMetrics> metrics = new ConcurrentHashMap<>();
+
+    // ex) GET /members/{id}
+    public static String endpoint(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : request.getRequestURI());
+    }
+
+    public void enter(String endpoint) {
+        currentEndpoint.set(endpoint);
+    }
+
+    public void exit() {
+        currentEndpoint.remove();
+    }
+
+    public String currentEndpoint() {
+        return currentEndpoint.get();
+    }
+
+    /**
+     * 다른 스레드에서 실행되는 작업에 현재 endpoint를 전달한다. (TaskDecorator)
+     */
+    public Runnable propagate(Runnable task) {
+        String endpoint = currentEndpoint.get();
+        if (endpoint == null) {
+            return task;
+        }
+        return () -> {
+            String previous = currentEndpoint.get();
+            currentEndpoint.set(endpoint);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    currentEndpoint.remove();
+                } else {
+                    currentEndpoint.set(previous);
+                }
+            }
+        };
+    }
+
+    public void recordHold(String endpoint, long micros) {
+        metrics.computeIfAbsent(endpoint, key -> new EndpointMetrics()).recordHold(micros);
+    }
+
+    public void recordLazyLoading(String endpoint) {
+        metrics.computeIfAbsent(endpoint, key -> new EndpointMetrics()).lazyLoadings.increment();
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        metrics.forEach((endpoint, endpointMetrics) -> result.put(endpoint, endpointMetrics.snapshot()));
+        return result;
+    }
+
+    private static class EndpointMetrics {
+        private final LongAdder connections = new LongAdder();
+        private final LongAdder totalHoldMicros = new LongAdder();
+        private final LongAccumulator maxHoldMicros = new LongAccumulator(Math::max, 0);
+        private final LatencyHistogram hold = new LatencyHistogram();
+        private final LongAdder lazyLoadings = new LongAdder();
+
+        private void recordHold(long micros) {
+            connections.increment();
+            totalHoldMicros.add(micros);
+            maxHoldMicros.accumulate(micros);
+            hold.record(micros);
+        }
+
+        private Map<String, Object> snapshot() {
+            Map<String, Object> result = new LinkedHashMap<>();
+            long count = connections.sum();
+            result.put("connections", count);
+            result.put("avgHoldMicros", count == 0 ? 0 : totalHoldMicros.sum() / count);
+            result.put("p50HoldMicros", hold.percentile(50));
+            result.put("p99HoldMicros", hold.percentile(99));
+            result.put("maxHoldMicros", maxHoldMicros.get());
+            result.put("lazyLoadingOutsideTransaction", lazyLoadings.sum());
+            return result;
+        }
+    }
+}
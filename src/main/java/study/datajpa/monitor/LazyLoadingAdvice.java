@@ -0,0 +1,56 @@
+package study.datajpa.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.LazyInitializationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-02
+ * Time: 20:50
+ **/
+
+/**
+ * OSIV를 끄면 트랜잭션이 끝난 뒤(컨트롤러, JSON 변환) 지연로딩을 하면 LazyInitializationException이 발생한다.
+ * 어떤 API에서 fetch plan(EntityGraph, DTO projection)이 빠졌는지 로그로 남기고 ConnectionHoldMetrics에 집계한다.
+ */
+@Slf4j
+@RestControllerAdvice
+public class LazyLoadingAdvice {
+
+    private final ConnectionHoldMetrics metrics;
+
+    public LazyLoadingAdvice(ConnectionHoldMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @ExceptionHandler(LazyInitializationException.class)
+    public ResponseEntity<String> lazyLoading(HttpServletRequest request, LazyInitializationException e) {
+        return report(request, e);
+    }
+
+    // JSON 변환 중에 지연로딩한 경우
+    @ExceptionHandler(HttpMessageNotWritableException.class)
+    public ResponseEntity<String> notWritable(HttpServletRequest request, HttpMessageNotWritableException e) {
+        for (Throwable cause = e.getCause(); cause != null; cause = cause.getCause()) {
+            if (cause instanceof LazyInitializationException) {
+                return report(request, (LazyInitializationException) cause);
+            }
+        }
+        throw e;
+    }
+
+    private ResponseEntity<String> report(HttpServletRequest request, LazyInitializationException e) {
+        String endpoint = ConnectionHoldMetrics.endpoint(request);
+        metrics.recordLazyLoading(endpoint);
+        log.warn("트랜잭션 밖에서 지연로딩 [{}] fetch plan(EntityGraph, DTO)을 지정할것: {}", endpoint, e.getMessage());
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("lazy loading outside transaction");
+    }
+}
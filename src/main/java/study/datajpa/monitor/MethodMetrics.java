@@ -0,0 +1,42 @@
+package study.datajpa.monitor;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-19
+ * Time: 22:30
+ **/
+// 리포지토리 메서드 하나의 호출 수, 에러 수, 조회 row 수, 실행 쿼리 수, 지연시간
+public class MethodMetrics {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder statements = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public void record(long micros, long rowCount, long statementCount, boolean error) {
+        calls.increment();
+        if (error) {
+            errors.increment();
+        }
+        rows.add(rowCount);
+        statements.add(statementCount);
+        latency.record(micros);
+    }
+
+    public Map<String, Object> snapshot() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("calls", calls.sum());
+        result.put("errors", errors.sum());
+        result.put("rows", rows.sum());
+        result.put("statements", statements.sum());
+        result.put("p50Micros", latency.percentile(50));
+        result.put("p99Micros", latency.percentile(99));
+        return result;
+    }
+}
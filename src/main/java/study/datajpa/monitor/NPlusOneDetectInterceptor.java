@@ -0,0 +1,66 @@
+package study.datajpa.monitor;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.Map;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-18
+ * Time: 20:52
+ **/
+
+/**
+ * 요청마다 실행된 쿼리 수를 집계하고, N + 1 로 의심되는 쿼리를 로그로 남긴다.
+ * 비동기 요청(CompletableFuture)은 처음 dispatch와 async dispatch가 다른 스레드에서 실행될 수 있기 때문에
+ * Scope를 요청 attribute에 보관한다. (비동기 작업의 쿼리는 TaskDecorator로 같은 Scope에 집계된다)
+ */
+@Slf4j
+@Component
+public class NPlusOneDetectInterceptor implements AsyncHandlerInterceptor {
+
+    public static final String SCOPE_ATTRIBUTE = NPlusOneDetectInterceptor.class.getName() + ".SCOPE";
+
+    private final int threshold;
+
+    public NPlusOneDetectInterceptor(@Value("${datajpa.n-plus-one.threshold:5}") int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCounter.Scope scope = (QueryCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope == null) {
+            request.setAttribute(SCOPE_ATTRIBUTE, QueryCounter.start());
+        } else {
+            QueryCounter.resume(scope); // async dispatch
+        }
+        return true;
+    }
+
+    // 톰캣 스레드를 반환하기 전에 ThreadLocal을 비운다. (다음 요청으로 Scope가 섞이지 않도록)
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCounter.stop();
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        QueryCounter.stop();
+        QueryCounter.Scope scope = (QueryCounter.Scope) request.getAttribute(SCOPE_ATTRIBUTE);
+        if (scope == null) {
+            return;
+        }
+        Map<String, Integer> repeated = scope.findRepeated(threshold);
+        for (Map.Entry<String, Integer> entry : repeated.entrySet()) {
+            log.warn("N + 1 의심 [{} {}] {}회 실행: {}", request.getMethod(), request.getRequestURI(), entry.getValue(), entry.getKey());
+        }
+        log.debug("[{} {}] 쿼리 {}회 실행", request.getMethod(), request.getRequestURI(), scope.getTotal());
+    }
+}
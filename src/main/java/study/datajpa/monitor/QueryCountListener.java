@@ -0,0 +1,24 @@
+package study.datajpa.monitor;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.SQLException;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-18
+ * Time: 20:40
+ **/
+// p6spy-spring-boot-starter는 JdbcEventListener 빈을 자동으로 등록해준다.
+@Component
+public class QueryCountListener extends JdbcEventListener {
+
+    @Override
+    public void onAfterAnyExecute(StatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        // 바인딩 파라메터를 제외한 SQL 기준으로 집계
+        QueryCounter.record(statementInformation.getSql());
+    }
+}
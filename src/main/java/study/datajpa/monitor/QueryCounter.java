@@ -0,0 +1,110 @@
+package study.datajpa.monitor;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-18
+ * Time: 20:31
+ **/
+
+/**
+ * 스레드(요청, 트랜잭션) 단위로 실행된 SQL 수를 센다.
+ * start() ~ stop() 사이에 실행된 쿼리만 집계하고, 시작하지 않은 스레드는 집계하지 않는다.
+ * 스레드별 누적 실행 수(executedOnThread)는 항상 집계한다. (메서드 전후의 차이로 쿼리 수를 구할때 사용)
+ */
+public class QueryCounter {
+
+    private static final ThreadLocal<Scope> current = new ThreadLocal<>();
+    private static final ThreadLocal<long[]> executed = ThreadLocal.withInitial(() -> new long[1]);
+
+    public static Scope start() {
+        Scope scope = new Scope();
+        current.set(scope);
+        return scope;
+    }
+
+    /**
+     * 다른 스레드에서 시작한 Scope를 현재 스레드에서 이어서 집계한다. (ex. 비동기 요청의 async dispatch)
+     */
+    public static void resume(Scope scope) {
+        current.set(scope);
+    }
+
+    public static Scope stop() {
+        Scope scope = current.get();
+        current.remove();
+        return scope == null ? new Scope() : scope;
+    }
+
+    public static Scope current() {
+        return current.get();
+    }
+
+    public static long executedOnThread() {
+        return executed.get()[0];
+    }
+
+    /**
+     * 다른 스레드에서 실행되는 작업의 쿼리를 현재 Scope에 집계한다. (TaskDecorator)
+     */
+    public static Runnable propagate(Runnable task) {
+        Scope scope = current.get();
+        if (scope == null) {
+            return task;
+        }
+        return () -> {
+            Scope previous = current.get();
+            current.set(scope);
+            try {
+                task.run();
+            } finally {
+                if (previous == null) {
+                    current.remove();
+                } else {
+                    current.set(previous);
+                }
+            }
+        };
+    }
+
+    static void record(String sql) {
+        executed.get()[0]++;
+        Scope scope = current.get();
+        if (scope != null) {
+            scope.record(sql);
+        }
+    }
+
+    public static class Scope {
+
+        private int total;
+        private final Map<String, Integer> countBySql = new HashMap<>();
+
+        // propagate로 여러 스레드에서 같은 Scope에 집계할 수 있다.
+        private synchronized void record(String sql) {
+            total++;
+            countBySql.merge(sql, 1, Integer::sum);
+        }
+
+        public synchronized int getTotal() {
+            return total;
+        }
+
+        /**
+         * 파라메터만 다르고 같은 SQL이 threshold 번 이상 실행되었다면 N + 1 로 판단한다.
+         * -> 지연로딩된 프록시를 하나씩 초기화할 때 나타나는 패턴
+         */
+        public synchronized Map<String, Integer> findRepeated(int threshold) {
+            Map<String, Integer> repeated = new HashMap<>();
+            countBySql.forEach((sql, count) -> {
+                if (count >= threshold) {
+                    repeated.put(sql, count);
+                }
+            });
+            return repeated;
+        }
+    }
+}
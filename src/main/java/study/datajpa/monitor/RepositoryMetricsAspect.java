@@ -0,0 +1,101 @@
+package study.datajpa.monitor;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Slice;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import study.datajpa.repository.Window;
+
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.BaseStream;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-19
+ * Time: 22:45
+ **/
+
+/**
+ * 리포지토리 메서드별 지연시간(p50, p99), 조회 row 수, 실행 쿼리 수를 기록한다.
+ * SQL 로그와 달리 집계만 하기 때문에 운영에서도 켜둘 수 있다.
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = "datajpa.metrics.enabled", matchIfMissing = true)
+public class RepositoryMetricsAspect {
+
+    private final Map<String, MethodMetrics> metrics = new ConcurrentHashMap<>();
+    private final Map<Class<?>, String> repositoryNames = new ConcurrentHashMap<>();
+
+    @Around("target(study.datajpa.repository.MemberRepository)" +
+            " || target(study.datajpa.repository.TeamRepository)" +
+            " || target(study.datajpa.repository.ItemRepository)" +
+            " || target(study.datajpa.repository.MemberJpaRepository)" +
+            " || target(study.datajpa.repository.TeamJpaRepository)")
+    public Object record(ProceedingJoinPoint joinPoint) throws Throwable {
+        long startStatements = QueryCounter.executedOnThread();
+        long start = System.nanoTime();
+        Object result = null;
+        boolean error = false;
+        try {
+            result = joinPoint.proceed();
+            return result;
+        } catch (Throwable e) {
+            error = true;
+            throw e;
+        } finally {
+            long micros = (System.nanoTime() - start) / 1_000;
+            String name = repositoryName(joinPoint.getTarget()) + "." + joinPoint.getSignature().getName();
+            metrics.computeIfAbsent(name, key -> new MethodMetrics())
+                    .record(micros, rowCount(result), QueryCounter.executedOnThread() - startStatements, error);
+        }
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new TreeMap<>();
+        metrics.forEach((name, methodMetrics) -> result.put(name, methodMetrics.snapshot()));
+        return result;
+    }
+
+    // Spring data JPA 리포지토리는 프록시이기 때문에 구현한 리포지토리 인터페이스 이름을 사용한다.
+    private String repositoryName(Object target) {
+        return repositoryNames.computeIfAbsent(target.getClass(), type -> {
+            if (Proxy.isProxyClass(type)) {
+                for (Class<?> repositoryInterface : type.getInterfaces()) {
+                    if (repositoryInterface.getPackage().getName().startsWith("study.datajpa.repository")) {
+                        return repositoryInterface.getSimpleName();
+                    }
+                }
+            }
+            return ClassUtils.getUserClass(type).getSimpleName();
+        });
+    }
+
+    private long rowCount(Object result) {
+        if (result == null || result instanceof Number || result instanceof Boolean || result instanceof BaseStream) {
+            return 0;
+        }
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof Slice) {
+            return ((Slice<?>) result).getNumberOfElements();
+        }
+        if (result instanceof Window) {
+            return ((Window<?>) result).getContent().size();
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).isPresent() ? 1 : 0;
+        }
+        return 1;
+    }
+}
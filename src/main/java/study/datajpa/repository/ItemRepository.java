@@ -9,5 +9,5 @@ import study.datajpa.entity.Item;
  * Date: 2020-03-10
  * Time: 13:04
  **/
-public interface ItemRepository extends JpaRepository<Item, Long> {
+public interface ItemRepository extends JpaRepository<Item, String> {
 }
@@ -0,0 +1,48 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-14
+ * Time: 14:02
+ **/
+
+/**
+ * Keyset(seek) 페이징에서 사용하는 커서
+ * (username desc, member_id desc) 정렬 기준으로 마지막으로 읽은 row의 키를 담는다.
+ * 클라이언트에는 Base64로 인코딩된 불투명한(opaque) 토큰으로만 노출한다.
+ */
+@Getter
+public class KeysetCursor {
+
+    private static final char DELIMITER = ':';
+
+    private final String username;
+    private final Long id;
+
+    public KeysetCursor(String username, Long id) {
+        this.username = username;
+        this.id = id;
+    }
+
+    public String encode() {
+        // username에 구분자가 들어있을수 있기 때문에 id를 앞에 둔다.
+        String raw = id + String.valueOf(DELIMITER) + username;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static KeysetCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int index = raw.indexOf(DELIMITER);
+            return new KeysetCursor(raw.substring(index + 1), Long.valueOf(raw.substring(0, index)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("잘못된 커서 토큰입니다. token = " + token, e);
+        }
+    }
+}
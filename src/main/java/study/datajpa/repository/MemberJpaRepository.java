@@ -1,12 +1,22 @@
 package study.datajpa.repository;
 
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import study.datajpa.entity.Member;
+import study.datajpa.repository.support.BulkUpdateResult;
+import study.datajpa.repository.support.ChunkedBulkUpdater;
+import study.datajpa.repository.support.CountQuery;
+import study.datajpa.repository.support.CountStrategy;
+import study.datajpa.repository.support.ScrollingStreams;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 /**
  * Created by IntelliJ IDEA.
@@ -14,12 +24,19 @@ import java.util.Optional;
  * Date: 2020-02-23
  * Time: 21:53
  **/
+@Slf4j
 @Repository
 public class MemberJpaRepository {
 
     @PersistenceContext
     private EntityManager em;
 
+    @Autowired
+    private CountStrategy countStrategy;
+
+    @Autowired
+    private ChunkedBulkUpdater chunkedBulkUpdater;
+
     public Member save(Member member) {
         em.persist(member);
         return member;
@@ -38,6 +55,12 @@ public class MemberJpaRepository {
                 .getResultList();
     }
 
+    // findAll의 Stream 버전. 결과를 List로 모두 올리지 않고 커서로 읽는다.
+    public Stream<Member> streamAll(int fetchSize) {
+        Session session = em.unwrap(Session.class);
+        return ScrollingStreams.stream(session, session.createQuery("select m from Member m", Member.class), fetchSize, true);
+    }
+
     public Optional<Member> findById(Long id) {
         Member member = em.find(Member.class, id);
         return Optional.ofNullable(member);
@@ -73,17 +96,37 @@ public class MemberJpaRepository {
                 .getResultList();
     }
 
+    /**
+     * findByPage의 Keyset 페이징 버전
+     * OFFSET은 앞 페이지의 row를 모두 읽고 버리기 때문에 뒤 페이지로 갈수록 느려진다.
+     * 마지막으로 조회한 (username, id) 보다 뒤에 있는 row만 조회하도록 조건을 건다.
+     */
+    public Window<Member> findByKeyset(int age, String cursor, int limit) {
+        return MemberKeysetQuery.find(em, age, cursor, limit);
+    }
+
     public long totalCount(int age) {
         // totalCount 에서는 sorting 할 필요가 없음
-        return em.createQuery("select count(m) from Member m where m.age = :age", Long.class)
+        String jpql = "select count(m) from Member m where m.age = :age";
+        return countStrategy.count(CountQuery.of(Member.class.getName(), jpql, () -> em.createQuery(jpql, Long.class)
                 .setParameter("age", age)
-                .getSingleResult();
+                .getSingleResult(), age));
     }
 
     // 파라메터로 넘어온 나이보다 큰 멤버의 나이를 1씩 증가
     public int bulkAgePlus(int age) {
-        return em.createQuery("update Member m set m.age = m.age + 1 where m.age >= :age")
+        return em.createQuery("update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age")
                 .setParameter("age", age)
                 .executeUpdate();
     }
+
+    /**
+     * bulkAgePlus를 PK 범위(chunkSize)로 나눠서 실행
+     * 청크마다 커밋하기 때문에 트랜잭션 밖에서 호출해야 한다.
+     */
+    public BulkUpdateResult bulkAgePlusChunked(int age, long chunkSize) {
+        return chunkedBulkUpdater.execute(Member.class, "update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age",
+                Collections.singletonMap("age", age), chunkSize,
+                (completed, total, updatedRows) -> log.info("bulkAgePlus {}/{} chunks, {} rows", completed, total, updatedRows));
+    }
 }
@@ -0,0 +1,61 @@
+package study.datajpa.repository;
+
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-05
+ * Time: 10:20
+ **/
+
+/**
+ * 회원 Keyset 페이징 쿼리 (username desc, member_id desc)
+ * MemberJpaRepository, MemberRepositoryImpl 에서 같이 사용한다.
+ *
+ * OFFSET 대신 마지막으로 읽은 row의 (username, id) 이후부터 조회한다.
+ * -> 앞 페이지의 row를 읽고 버리는 비용이 없기 때문에 페이지 번호와 상관없이 비용이 일정하다.
+ */
+final class MemberKeysetQuery {
+
+    private MemberKeysetQuery() {
+    }
+
+    /**
+     * @param age    null 이면 나이 조건 없음
+     * @param cursor null 이면 첫 페이지
+     */
+    static Window<Member> find(EntityManager em, Integer age, String cursor, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size는 1 이상이어야 합니다. size = " + size);
+        }
+        KeysetCursor keyset = cursor == null ? null : KeysetCursor.decode(cursor);
+
+        StringBuilder jpql = new StringBuilder("select m from Member m where 1 = 1");
+        if (age != null) {
+            jpql.append(" and m.age = :age");
+        }
+        if (keyset != null) {
+            jpql.append(" and (m.username < :username or (m.username = :username and m.id < :id))");
+        }
+        jpql.append(" order by m.username desc, m.id desc");
+
+        TypedQuery<Member> query = em.createQuery(jpql.toString(), Member.class);
+        if (age != null) {
+            query.setParameter("age", age);
+        }
+        if (keyset != null) {
+            query.setParameter("username", keyset.getUsername());
+            query.setParameter("id", keyset.getId());
+        }
+
+        // Slice와 동일하게 limit + 1 개를 요청해서 다음 페이지 유무를 판단
+        List<Member> members = query.setMaxResults(size + 1)
+                .getResultList();
+        return Window.of(members, size);
+    }
+}
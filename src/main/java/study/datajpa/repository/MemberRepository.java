@@ -1,18 +1,18 @@
 package study.datajpa.repository;
 
-import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.*;
 import org.springframework.data.repository.query.Param;
-import study.datajpa.dto.MemberDto;
+import org.springframework.scheduling.annotation.Async;
+import study.datajpa.AsyncConfig;
 import study.datajpa.entity.Member;
 
 import javax.persistence.LockModeType;
 import javax.persistence.QueryHint;
-import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Created by IntelliJ IDEA.
@@ -37,31 +37,24 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @Query("select m.username from Member m")
     List<String> findUsernames();
 
-    // DTO 조회시 new operation을 사용해야 한다.
-    @Query("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name) from Member m join m.team t")
-    List<MemberDto> findMemberDto();
-
-    @Query("select m from Member m where m.username in :names")
-    List<Member> findByNames(@Param("names") Collection<String> names);
-
     List<Member> findListByUsername(String username); // 컬렉션
 
     Member findOneByUsername(String username); // 단건
 
     Optional<Member> findOptionalByUsername(String username); // optional
 
-    Page<Member> findByAge(int age, Pageable pageable);
-
     @Query(value = "select m from Member m left join m.team t", countQuery = "select count(m) from Member m")
     Slice<Member> findSliceByAge(int age, Pageable pageable);
 
     // @Modifying 애노테이션이 있어야 update쿼리를 실행한다.
     // 데이터 변경이 일어나는 쿼리는 @Modifying 애노테이션을 사용할것.
     // 만약 @Modifying애노테이션이 없다면 예외가 발생한다.
+    // 벌크 연산은 @Version을 자동으로 증가시키지 않기 때문에 직접 증가시킨다. (변경감지로 수정중인 트랜잭션이 충돌을 감지하도록)
     @Modifying(clearAutomatically = true) // 영속성 컨텍스트를 자동으로 비워주는 옵션
-    @Query("update Member m set m.age = m.age + 1 where m.age >= :age")
+    @Query("update Member m set m.age = m.age + 1, m.version = m.version + 1 where m.age >= :age")
     int bulkAgePlus(@Param("age") int age);
 
+    @ReadOnlyQuery
     @Query("select m from Member m left join fetch m.team")
     List<Member> findMemberFetchJoin();
 
@@ -78,9 +71,11 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
         * 간단한 fetch join의 경우 EntityGraph를 사용하고 복잡해 지는경우 JPQL 혹은 QueryDSL 사용
     */
     @Override
+    @ReadOnlyQuery
     @EntityGraph(attributePaths = "team")
     List<Member> findAll();
 
+    @ReadOnlyQuery
     @EntityGraph(attributePaths = "team")
     @Query("select m from Member m")
     List<Member> findMemberEntityGraph();
@@ -89,26 +84,44 @@ public interface MemberRepository extends JpaRepository<Member, Long>, MemberRep
     @EntityGraph("Member.All") // NamedEntityGraph 기능 사용
     List<Member> findEntityGraphByUsername(@Param("name") String username);
 
+    // 트랜잭션 밖에서 MemberDto(Member)로 변환할때 사용 (team.name 까지 조회)
+    @EntityGraph("Member.All")
+    Optional<Member> findWithTeamById(Long id);
+
+    // 힌트는 엔티티만 읽기 전용으로 만든다. replica로 보내려면 읽기 전용 트랜잭션이 필요하다. (@ReadOnlyQuery)
+    @ReadOnlyQuery
     @QueryHints(value = @QueryHint(name = "org.hibernate.readOnly", value = "true"))
     Member findReadOnlyByUsername(@Param("name") String username);
 
     // select from update
     // DB에서 셀렉 할때 Lock을 거는 방식을 JPA에서도 지원한다.
+    // 같은 row에 쓰기가 몰리면 락 대기로 커넥션을 오래 잡고 있게 된다. -> 낙관적 락 + 재시도(increaseAge, @RetryOnConflict)
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     Member findLockByUsername(@Param("name") String username);
 
-    List<UserNameOnly> findProjectionsByUsername(@Param("username") String username);
-
+    @ReadOnlyQuery
     List<UsernameOnlyDto> findClazzProjectionsByUsername(@Param("username") String username);
 
     // 동적 프로젝션
+    @ReadOnlyQuery
     <T> List<T> findClazzDynamicProjectionsByUsername(@Param("username") String username, Class<T> type);
 
     @Query(value = "select * from member where username = ?", nativeQuery = true)
     Member findByNativeQuery(String username);
 
-    @Query(value = "select m.member_id as id, m.username, t.name as teamName from member m left join team t",
-            countQuery = "select count(1) from member",
-            nativeQuery = true)
-    Page<MemberProjection> findByNativeProjection(Pageable pageable);
+    /*
+        비동기 조회 (AsyncConfig.REPOSITORY_EXECUTOR 스레드풀에서 실행)
+        - 호출한 스레드(톰캣)는 바로 반환되고 결과는 CompletableFuture로 받는다.
+        - 트랜잭션 밖에서 실행되기 때문에 반환된 엔티티는 준영속 상태 (지연로딩 불가)
+        - 스레드풀이 가득 차면 RejectedExecutionException
+     */
+    @Async(AsyncConfig.REPOSITORY_EXECUTOR)
+    @Query("select m from Member m where m.username = :username")
+    CompletableFuture<List<Member>> findByUsernameAsync(@Param("username") String username);
+
+    // JPQL로 조회하면 2차 캐시를 거치지 않기 때문에 findById(em.find)로 조회한다.
+    @Async(AsyncConfig.REPOSITORY_EXECUTOR)
+    default CompletableFuture<Member> findByIdAsync(Long id) {
+        return CompletableFuture.completedFuture(findById(id).orElse(null));
+    }
 }
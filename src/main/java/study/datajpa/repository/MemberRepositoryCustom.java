@@ -1,8 +1,16 @@
 package study.datajpa.repository;
 
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
+import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 
+import javax.persistence.criteria.JoinType;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * Created by IntelliJ IDEA.
@@ -12,4 +20,62 @@ import java.util.List;
  **/
 public interface MemberRepositoryCustom {
     List<Member> findMemberCustom();
+
+    // totalCount는 CountStrategy를 사용한다. (기본 구현을 대체)
+    @ReadOnlyQuery
+    Page<Member> findByAge(int age, Pageable pageable);
+
+    @ReadOnlyQuery
+    Page<Member> findAll(Pageable pageable);
+
+    // MemberSpec(ShapedSpecification)은 SpecificationCache를 사용한다. (기본 구현을 대체)
+    List<Member> findAll(Specification<Member> spec);
+
+    // Query By Example (ExampleCompiler)
+    // team 조인 타입 지정 가능, primitive 기본값(age = 0)은 자동으로 조건에서 제외
+    List<Member> findAllByExample(Example<Member> example, JoinType teamJoin);
+
+    // DTO, 인터페이스 projection은 엔티티를 거치지 않고 컬럼을 바로 바인딩 (ProjectionMapper)
+    // @ReadOnlyQuery: 트랜잭션 밖에서 호출하면 읽기 전용 트랜잭션 -> replica (datajpa.routing.enabled)
+    @ReadOnlyQuery
+    List<MemberDto> findMemberDto();
+
+    @ReadOnlyQuery
+    Page<MemberDto> findMemberDtoPage(Pageable pageable);
+
+    @ReadOnlyQuery
+    Page<MemberProjection> findByNativeProjection(Pageable pageable);
+
+    @ReadOnlyQuery
+    List<NestedClosedProjections> findNestedProjectionsByUsername(String username);
+
+    // SpEL에서 사용하는 컬럼(username, age)만 조회
+    @ReadOnlyQuery
+    List<UserNameOnly> findProjectionsByUsername(String username);
+
+    // 낙관적 락 충돌시 재시도 (findLockByUsername 같은 비관적 락 대신 사용)
+    // 시도마다 최신 나이를 다시 읽어서 delta 만큼 증가시킨다.
+    @RetryOnConflict(maxAttempts = 10)
+    Member increaseAge(Long id, int delta);
+
+    // in 절 값이 chunkSize 보다 많으면 나눠서 조회하고, 트랜잭션 밖에서 호출하면 청크를 동시에 조회한다. (InListExecutor)
+    List<Member> findByNames(Collection<String> names);
+
+    // 대량 저장용. batchSize 단위로 flush 후 저장한 엔티티만 detach 하기 때문에 저장한 엔티티는 준영속 상태가 된다.
+    // 바깥 트랜잭션에서 이미 조회한 엔티티는 그대로 영속 상태로 남는다.
+    long saveAllBatched(Iterable<Member> members, int batchSize);
+
+    // 전체 스캔용 (findAll, findMemberCustom의 Stream 버전)
+    // 트랜잭션 안에서 try-with-resources로 사용할것
+    Stream<Member> streamAll(int fetchSize);
+
+    Stream<MemberDto> streamMemberDto(int fetchSize);
+
+    // Keyset 페이징 (username desc, member_id desc)
+    // cursor가 null 이면 첫 페이지를 조회한다.
+    @ReadOnlyQuery
+    Window<Member> findAllByKeyset(String cursor, int size);
+
+    @ReadOnlyQuery
+    Window<Member> findByAgeByKeyset(int age, String cursor, int size);
 }
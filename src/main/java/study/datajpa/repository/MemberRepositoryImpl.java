@@ -1,10 +1,46 @@
 package study.datajpa.repository;
 
 import lombok.RequiredArgsConstructor;
+import org.hibernate.Session;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+import org.springframework.data.mapping.PropertyReferenceException;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import org.springframework.data.util.ClassTypeInformation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
+import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.support.CountQuery;
+import study.datajpa.repository.support.CompiledProjection;
+import study.datajpa.repository.support.CountStrategy;
+import study.datajpa.repository.support.ExampleCompiler;
+import study.datajpa.repository.support.InListExecutor;
+import study.datajpa.repository.support.ProjectionMapper;
+import study.datajpa.repository.support.ScrollingStreams;
+import study.datajpa.repository.support.ShapedSpecification;
+import study.datajpa.repository.support.SpecificationCache;
 
 import javax.persistence.EntityManager;
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by IntelliJ IDEA.
@@ -15,11 +51,266 @@ import java.util.List;
 @RequiredArgsConstructor
 public class MemberRepositoryImpl implements MemberRepositoryCustom {
 
+    private static final CompiledProjection<UserNameOnly> USERNAME_ONLY = CompiledProjection.compile(UserNameOnly.class);
+    private static final ProjectionMapper<MemberDto> MEMBER_DTO = ProjectionMapper.constructor(MemberDto.class, "id", "username", "teamName");
+    private static final ProjectionMapper<MemberProjection> MEMBER_PROJECTION = ProjectionMapper.projection(MemberProjection.class);
+    private static final ProjectionMapper<NestedClosedProjections> NESTED_PROJECTION = ProjectionMapper.projection(NestedClosedProjections.class);
+
     private final EntityManager em;
+    private final CountStrategy countStrategy;
+    private final SpecificationCache specificationCache;
+    private final ExampleCompiler exampleCompiler;
+    private final InListExecutor inListExecutor;
 
     @Override
     public List<Member> findMemberCustom() {
         return em.createQuery("select m from Member m")
                 .getResultList();
     }
+
+    /**
+     * Spring data JPA 기본 구현은 Page 조회시 매번 count 쿼리를 실행한다.
+     * - 첫 페이지 혹은 마지막 페이지의 content가 pageSize 보다 작으면 count 쿼리를 생략 (PageableExecutionUtils)
+     * - 그 외에는 CountStrategy를 통해 캐시/추정치를 사용
+     */
+    @Override
+    public Page<Member> findByAge(int age, Pageable pageable) {
+        String jpql = QueryUtils.applySorting("select m from Member m where m.age = :age", pageable.getSort(), "m");
+        List<Member> content = page(em.createQuery(jpql, Member.class)
+                .setParameter("age", age), pageable)
+                .getResultList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
+
+        String countJpql = "select count(m) from Member m where m.age = :age";
+        CountQuery countQuery = CountQuery.of(Member.class.getName(), countJpql, () -> em.createQuery(countJpql, Long.class)
+                .setParameter("age", age)
+                .getSingleResult(), age);
+        return PageableExecutionUtils.getPage(content, pageable, () -> countStrategy.count(countQuery));
+    }
+
+    @Override
+    public Page<Member> findAll(Pageable pageable) {
+        String jpql = QueryUtils.applySorting("select m from Member m", pageable.getSort(), "m");
+        List<Member> content = page(em.createQuery(jpql, Member.class), pageable)
+                .getResultList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
+
+        String countJpql = "select count(m) from Member m";
+        CountQuery countQuery = CountQuery.ofTable(Member.class.getName(), "member", countJpql, () -> em.createQuery(countJpql, Long.class)
+                .getSingleResult());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countStrategy.count(countQuery));
+    }
+
+    /**
+     * ShapedSpecification 이면 shape 별로 만들어둔 CriteriaQuery에 값만 바인딩해서 실행한다.
+     * 그 외에는 기본 구현(SimpleJpaRepository)과 동일하게 매번 CriteriaQuery를 만든다.
+     */
+    @Override
+    public List<Member> findAll(Specification<Member> spec) {
+        if (spec instanceof ShapedSpecification) {
+            return specificationCache.createQuery(Member.class, (ShapedSpecification<Member>) spec).getResultList();
+        }
+
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<Member> query = cb.createQuery(Member.class);
+        Root<Member> root = query.from(Member.class);
+        if (spec != null) {
+            Predicate predicate = spec.toPredicate(root, query, cb);
+            if (predicate != null) {
+                query.where(predicate);
+            }
+        }
+        return em.createQuery(query.select(root)).getResultList();
+    }
+
+    @Override
+    public List<Member> findAllByExample(Example<Member> example, JoinType teamJoin) {
+        return findAll(exampleCompiler.compile(example, teamJoin));
+    }
+
+    /**
+     * DTO, 인터페이스 projection 조회는 ProjectionMapper로 컬럼을 바로 바인딩한다. (엔티티, 영속성 컨텍스트를 거치지 않음)
+     * 네이티브 쿼리는 addSynchronizedEntityClass로 지정한 엔티티에 변경이 있을때만 flush 한다.
+     */
+    @Override
+    public List<MemberDto> findMemberDto() {
+        return MEMBER_DTO.createNativeQuery(em.unwrap(Session.class), "select m.member_id as id, m.username as username, t.name as teamName" +
+                " from member m join team t on m.team_id = t.team_id")
+                .addSynchronizedEntityClass(Member.class)
+                .addSynchronizedEntityClass(Team.class)
+                .getResultList();
+    }
+
+    @Override
+    public Page<MemberDto> findMemberDtoPage(Pageable pageable) {
+        List<MemberDto> content = page(MEMBER_DTO.createNativeQuery(em.unwrap(Session.class), "select m.member_id as id, m.username as username, t.name as teamName" +
+                " from member m left join team t on m.team_id = t.team_id" + orderBy(pageable.getSort()))
+                .addSynchronizedEntityClass(Member.class)
+                .addSynchronizedEntityClass(Team.class), pageable)
+                .getResultList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
+        return PageableExecutionUtils.getPage(content, pageable, () -> countStrategy.count(memberTableCount()));
+    }
+
+    @Override
+    public Page<MemberProjection> findByNativeProjection(Pageable pageable) {
+        List<MemberProjection> content = page(MEMBER_PROJECTION.createNativeQuery(em.unwrap(Session.class), "select m.member_id as id, m.username as username, t.name as teamName" +
+                " from member m left join team t on m.team_id = t.team_id")
+                .addSynchronizedEntityClass(Member.class)
+                .addSynchronizedEntityClass(Team.class), pageable)
+                .getResultList();
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(content);
+        }
+        return PageableExecutionUtils.getPage(content, pageable, () -> countStrategy.count(memberTableCount()));
+    }
+
+    @Override
+    public List<NestedClosedProjections> findNestedProjectionsByUsername(String username) {
+        return NESTED_PROJECTION.createNativeQuery(em.unwrap(Session.class), "select m.username as username, t.name as team_name" +
+                " from member m left join team t on m.team_id = t.team_id where m.username = :username")
+                .addSynchronizedEntityClass(Member.class)
+                .addSynchronizedEntityClass(Team.class)
+                .setParameter("username", username)
+                .getResultList();
+    }
+
+    private CountQuery memberTableCount() {
+        String countSql = "select count(1) from member";
+        return CountQuery.ofTable(Member.class.getName(), "member", countSql, () -> ((Number) em.createNativeQuery(countSql)
+                .getSingleResult()).longValue());
+    }
+
+    // Pageable.unpaged()는 offset, pageSize를 지원하지 않는다. (UnsupportedOperationException) -> 전체 조회
+    private static <Q extends Query> Q page(Q query, Pageable pageable) {
+        if (pageable.isPaged()) {
+            query.setFirstResult((int) pageable.getOffset());
+            query.setMaxResults(pageable.getPageSize());
+        }
+        return query;
+    }
+
+    // MemberDto 속성 -> 컬럼
+    private static String orderBy(Sort sort) {
+        if (sort.isUnsorted()) {
+            return "";
+        }
+        StringBuilder orderBy = new StringBuilder(" order by ");
+        for (Sort.Order order : sort) {
+            switch (order.getProperty()) {
+                case "id":
+                    orderBy.append("m.member_id");
+                    break;
+                case "username":
+                    orderBy.append("m.username");
+                    break;
+                case "teamName":
+                    orderBy.append("t.name");
+                    break;
+                default:
+                    // 요청 파라메터(sort)를 잘못 보낸 경우이기 때문에 컨트롤러에서 400으로 응답한다.
+                    throw new PropertyReferenceException(order.getProperty(), ClassTypeInformation.from(MemberDto.class), Collections.emptyList());
+            }
+            orderBy.append(order.isAscending() ? " asc, " : " desc, ");
+        }
+        return orderBy.substring(0, orderBy.length() - 2);
+    }
+
+    @Override
+    public List<UserNameOnly> findProjectionsByUsername(String username) {
+        List<?> rows = em.createQuery("select " + USERNAME_ONLY.select("m") + " from Member m where m.username = :username")
+                .setParameter("username", username)
+                .getResultList();
+        return rows.stream()
+                .map(USERNAME_ONLY::map)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<Member> findByNames(Collection<String> names) {
+        return inListExecutor.execute(names, true, chunk -> em.createQuery("select m from Member m where m.username in :names", Member.class)
+                .setParameter("names", chunk)
+                .getResultList());
+    }
+
+    /**
+     * 비관적 락(select ... for update) 없이 변경감지로 수정하고, 커밋 시점에 version으로 충돌을 확인한다.
+     * 충돌하면 @RetryOnConflict가 새 트랜잭션에서 다시 조회해서 재시도한다.
+     */
+    @Override
+    @Transactional
+    public Member increaseAge(Long id, int delta) {
+        Member member = em.find(Member.class, id);
+        if (member == null) {
+            throw new EmptyResultDataAccessException("회원이 없습니다. id = " + id, 1);
+        }
+        member.setAge(member.getAge() + delta); // 커밋 시점에 update ... where member_id = ? and version = ?
+        return member;
+    }
+
+    /**
+     * saveAll은 저장한 엔티티를 모두 영속성 컨텍스트에 들고 있기 때문에 데이터가 많아지면 메모리가 계속 늘어난다.
+     * batchSize 마다 flush(JDBC batch insert) 후 저장한 엔티티를 detach 해서 영속성 컨텍스트를 일정한 크기로 유지한다.
+     */
+    @Override
+    @Transactional
+    public long saveAllBatched(Iterable<Member> members, int batchSize) {
+        Assert.isTrue(batchSize > 0, "batchSize는 1 이상이어야 합니다. batchSize = " + batchSize);
+        Session session = em.unwrap(Session.class);
+        Integer originalBatchSize = session.getJdbcBatchSize();
+        session.setJdbcBatchSize(batchSize);
+
+        long count = 0;
+        List<Member> chunk = new ArrayList<>(batchSize);
+        try {
+            for (Member member : members) {
+                em.persist(member);
+                chunk.add(member);
+                if (++count % batchSize == 0) {
+                    flushAndDetach(chunk);
+                }
+            }
+            flushAndDetach(chunk);
+        } finally {
+            session.setJdbcBatchSize(originalBatchSize);
+        }
+        return count;
+    }
+
+    // clear()는 호출한 쪽이 바깥 트랜잭션에서 조회한 엔티티까지 준영속으로 만들기 때문에 이 메서드가 저장한 엔티티만 detach 한다.
+    private void flushAndDetach(List<Member> chunk) {
+        em.flush();
+        chunk.forEach(em::detach);
+        chunk.clear();
+    }
+
+    @Override
+    public Stream<Member> streamAll(int fetchSize) {
+        Session session = em.unwrap(Session.class);
+        return ScrollingStreams.stream(session, session.createQuery("select m from Member m", Member.class), fetchSize, true);
+    }
+
+    // DTO는 영속성 컨텍스트에서 관리하지 않기 때문에 detach 할 필요가 없다.
+    @Override
+    public Stream<MemberDto> streamMemberDto(int fetchSize) {
+        Session session = em.unwrap(Session.class);
+        return ScrollingStreams.stream(session, session.createQuery("select new study.datajpa.dto.MemberDto(m.id, m.username, t.name)" +
+                " from Member m left join m.team t", MemberDto.class), fetchSize, false);
+    }
+
+    @Override
+    public Window<Member> findAllByKeyset(String cursor, int size) {
+        return MemberKeysetQuery.find(em, null, cursor, size);
+    }
+
+    @Override
+    public Window<Member> findByAgeByKeyset(int age, String cursor, int size) {
+        return MemberKeysetQuery.find(em, age, cursor, size);
+    }
 }
@@ -4,6 +4,7 @@ import org.springframework.data.jpa.domain.Specification;
 import org.springframework.util.StringUtils;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.repository.support.ShapedSpecification;
 
 import javax.persistence.criteria.*;
 
@@ -13,22 +14,25 @@ import javax.persistence.criteria.*;
  * Date: 2020-03-11
  * Time: 01:49
  **/
+/**
+ * 조건 값과 모양(shape)을 분리해서 SpecificationCache가 shape 별로 CriteriaQuery를 재사용할 수 있도록 한다.
+ * 일반 Specification과 조합해도 동작은 동일하다. (이 경우 캐시는 사용하지 않는다.)
+ */
 public class MemberSpec {
 
     public static Specification<Member> teamName(final String teamName) {
 
-        return (Specification<Member>) (root, query, criteriaBuilder) -> {
-
-            if (StringUtils.isEmpty(teamName)) {
-                return null;
-            }
+        if (StringUtils.isEmpty(teamName)) {
+            return ShapedSpecification.none();
+        }
 
+        return ShapedSpecification.of("teamName", teamName, (root, criteriaBuilder, value) -> {
             Join<Member, Team> team = root.join("team", JoinType.INNER);// 회원과 팀 조인
-            return criteriaBuilder.equal(team.get("name"), teamName);
-        };
+            return criteriaBuilder.equal(team.get("name"), value);
+        });
     }
 
     public static Specification<Member> username(final String username) {
-        return (Specification<Member>) (root, query, criteriaBuilder) -> criteriaBuilder.equal(root.get("username"), username);
+        return ShapedSpecification.of("username", username, (root, criteriaBuilder, value) -> criteriaBuilder.equal(root.get("username"), value));
     }
 }
@@ -0,0 +1,27 @@
+package study.datajpa.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-22
+ * Time: 13:15
+ **/
+
+/**
+ * 조회 전용 쿼리 메서드 (org.hibernate.readOnly 힌트를 리포지토리 단위로 적용)
+ * - 조회한 엔티티의 스냅샷을 만들지 않기 때문에 메모리를 덜 사용하고, flush 시점에 변경감지를 하지 않는다.
+ * - 트랜잭션이 없을때만 읽기 전용 트랜잭션(FlushMode.MANUAL)으로 실행한다.
+ *   호출한 쪽의 트랜잭션이 있으면 그 트랜잭션을 따른다. (읽기/쓰기 트랜잭션에서 조회한 엔티티는 수정하면 반영된다.)
+ * - 리포지토리 인터페이스에 선언하면 조회 메서드(find, get, read, query, count, exists, search) 전체에 적용된다.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReadOnlyQuery {
+}
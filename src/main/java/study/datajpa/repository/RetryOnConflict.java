@@ -0,0 +1,37 @@
+package study.datajpa.repository;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 22:05
+ **/
+
+/**
+ * 낙관적 락 충돌(OptimisticLockException, ObjectOptimisticLockingFailureException)이 나면 재시도하는 쓰기 메서드
+ * - 시도마다 새 트랜잭션으로 실행하기 때문에 메서드에 @Transactional이 있어야 한다.
+ * - 재시도 간격은 지수 백오프 + full jitter (0 ~ min(maxBackoff, backoff * 2^n) 사이 랜덤)
+ * - 바깥 트랜잭션 안에서 호출하면 재시도하지 않는다. (충돌난 영속성 컨텍스트를 다시 사용할수 없기 때문에 바깥 트랜잭션에서 재시도해야 한다)
+ *
+ * 주의: 재시도 해도 결과가 같은(멱등한) 작업이거나, 시도마다 최신 상태를 다시 읽어서 계산하는 작업에만 사용할것
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RetryOnConflict {
+
+    // 최초 시도 포함 최대 시도 횟수
+    int maxAttempts() default 5;
+
+    // 첫번째 재시도 백오프 상한 (ms)
+    long backoffMillis() default 5;
+
+    // 백오프 상한의 최대값 (ms)
+    long maxBackoffMillis() default 200;
+}
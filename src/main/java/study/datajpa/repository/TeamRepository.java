@@ -9,5 +9,7 @@ import study.datajpa.entity.Team;
  * Date: 2020-02-26
  * Time: 00:01
  **/
-public interface TeamRepository extends JpaRepository<Team, Long> {
+// 팀은 거의 변경되지 않기 때문에 조회 메서드는 모두 읽기 전용으로 조회
+@ReadOnlyQuery
+public interface TeamRepository extends JpaRepository<Team, Long>, TeamRepositoryCustom {
 }
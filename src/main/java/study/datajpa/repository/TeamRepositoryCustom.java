@@ -0,0 +1,18 @@
+package study.datajpa.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import study.datajpa.entity.Team;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-03
+ * Time: 20:40
+ **/
+public interface TeamRepositoryCustom {
+
+    // members를 같이 조회하는 페이징 (TwoPhasePaging)
+    // @EntityGraph(attributePaths = "members") Page<Team> findAll(Pageable) 는 메모리에서 페이징하기 때문에 사용하지 말것
+    Page<Team> findAllWithMembers(Pageable pageable);
+}
@@ -0,0 +1,38 @@
+package study.datajpa.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.repository.support.PageableExecutionUtils;
+import study.datajpa.entity.Team;
+import study.datajpa.repository.support.CountQuery;
+import study.datajpa.repository.support.CountStrategy;
+import study.datajpa.repository.support.TwoPhasePaging;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-03
+ * Time: 20:45
+ **/
+@RequiredArgsConstructor
+public class TeamRepositoryImpl implements TeamRepositoryCustom {
+
+    private final EntityManager em;
+    private final CountStrategy countStrategy;
+
+    @Override
+    public Page<Team> findAllWithMembers(Pageable pageable) {
+        List<Team> content = TwoPhasePaging.findContent(em, Team.class,
+                "select t.id from Team t", "t",
+                "select distinct t from Team t left join fetch t.members where t.id in :ids", pageable);
+
+        String countJpql = "select count(t) from Team t";
+        CountQuery countQuery = CountQuery.ofTable(Team.class.getName(), "team", countJpql, () -> em.createQuery(countJpql, Long.class)
+                .getSingleResult());
+        return PageableExecutionUtils.getPage(content, pageable, () -> countStrategy.count(countQuery));
+    }
+}
@@ -13,6 +13,7 @@ public interface UserNameOnly {
     // SpEL 을 사용
     // Member Entity의 Property를 모두 조회 한뒤 SpEL에 명시한 데이터를 조합
     // DB에서 모두 조회한뒤 처리 하는것 open projection
+    // -> findProjectionsByUsername 은 CompiledProjection으로 username, age 컬럼만 조회하고 SpEL은 컴파일해서 실행한다.
     @Value("#{target.username + ' ' + target.age}")
     String getUsername();
 
@@ -0,0 +1,57 @@
+package study.datajpa.repository;
+
+import lombok.Getter;
+import study.datajpa.entity.Member;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-14
+ * Time: 14:10
+ **/
+
+/**
+ * Keyset 페이징 결과
+ * Slice와 동일하게 limit + 1 개를 조회해서 다음 페이지 존재 유무만 판단한다. (totalCount 쿼리 없음)
+ * OFFSET을 사용하지 않기 때문에 N 번째 페이지도 첫 페이지와 동일한 비용으로 조회된다.
+ */
+@Getter
+public class Window<T> {
+
+    private final List<T> content;
+    private final boolean hasNext;
+    private final String nextCursor; // 마지막 페이지라면 null
+
+    public Window(List<T> content, boolean hasNext, String nextCursor) {
+        this.content = Collections.unmodifiableList(content);
+        this.hasNext = hasNext;
+        this.nextCursor = nextCursor;
+    }
+
+    // fetched: size + 1 개까지 조회한 결과
+    public static Window<Member> of(List<Member> fetched, int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size는 1 이상이어야 합니다. size = " + size);
+        }
+        boolean hasNext = fetched.size() > size;
+        List<Member> content = hasNext ? fetched.subList(0, size) : fetched;
+
+        String nextCursor = null;
+        if (hasNext) {
+            Member last = content.get(content.size() - 1);
+            nextCursor = new KeysetCursor(last.getUsername(), last.getId()).encode();
+        }
+        return new Window<>(content, hasNext, nextCursor);
+    }
+
+    // Page.map 과 동일하게 DTO로 변환할 수 있도록 제공
+    public <U> Window<U> map(Function<? super T, ? extends U> converter) {
+        List<U> converted = content.stream().map(converter).collect(Collectors.toList());
+        return new Window<>(converted, hasNext, nextCursor);
+    }
+}
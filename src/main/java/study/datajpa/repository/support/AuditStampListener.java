@@ -0,0 +1,51 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.auditing.AuditingHandler;
+import study.datajpa.entity.Auditable;
+
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-30
+ * Time: 20:40
+ **/
+
+/**
+ * AuditingEntityListener 대체
+ * - Auditable 엔티티는 트랜잭션 단위 AuditStamp를 stampCreated/stampModified로 직접 설정한다. (리플렉션, 엔티티마다 AuditorAware 호출 없음)
+ * - 그 외 엔티티, datajpa.auditing.batched=false 이면 AuditingEntityListener와 동일하게 AuditingHandler를 사용한다.
+ *
+ * Hibernate가 SpringBeanContainer로 생성하기 때문에 생성자 주입을 받을수 있다.
+ */
+public class AuditStampListener {
+
+    private final AuditStampProvider stampProvider;
+    private final ObjectProvider<AuditingHandler> auditingHandler; // @EnableJpaAuditing 이 등록하는 jpaAuditingHandler
+
+    public AuditStampListener(AuditStampProvider stampProvider, ObjectProvider<AuditingHandler> auditingHandler) {
+        this.stampProvider = stampProvider;
+        this.auditingHandler = auditingHandler;
+    }
+
+    @PrePersist
+    public void touchForCreate(Object target) {
+        if (stampProvider.isBatched() && target instanceof Auditable) {
+            ((Auditable) target).stampCreated(stampProvider.current());
+        } else {
+            auditingHandler.getObject().markCreated(target);
+        }
+    }
+
+    @PreUpdate
+    public void touchForUpdate(Object target) {
+        if (stampProvider.isBatched() && target instanceof Auditable) {
+            ((Auditable) target).stampModified(stampProvider.current());
+        } else {
+            auditingHandler.getObject().markModified(target);
+        }
+    }
+}
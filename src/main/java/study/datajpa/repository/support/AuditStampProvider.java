@@ -0,0 +1,72 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.AuditorAware;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.entity.AuditStamp;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-30
+ * Time: 20:25
+ **/
+
+/**
+ * 작성자(AuditorAware), 현재 시간을 트랜잭션마다 한번만 구한다.
+ * - 트랜잭션 리소스로 바인딩해두고 트랜잭션이 끝나면 해제한다.
+ * - 트랜잭션 동기화가 없으면(트랜잭션 밖에서 persist) 매번 구한다.
+ * - 시간은 엔티티를 저장한 시간이 아니라 트랜잭션에서 처음 저장/수정한 시간이다.
+ */
+@Component
+public class AuditStampProvider {
+
+    private final AuditorAware<String> auditorAware;
+    private final boolean batched;
+    private final LongAdder resolved = new LongAdder();
+
+    public AuditStampProvider(AuditorAware<String> auditorAware,
+                              @Value("${datajpa.auditing.batched:true}") boolean batched) {
+        this.auditorAware = auditorAware;
+        this.batched = batched;
+    }
+
+    // false 이면 AuditingEntityListener와 동일하게 엔티티마다 AuditingHandler를 사용한다.
+    public boolean isBatched() {
+        return batched;
+    }
+
+    public AuditStamp current() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return resolve();
+        }
+
+        AuditStamp stamp = (AuditStamp) TransactionSynchronizationManager.getResource(this);
+        if (stamp == null) {
+            stamp = resolve();
+            TransactionSynchronizationManager.bindResource(this, stamp);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(AuditStampProvider.this);
+                }
+            });
+        }
+        return stamp;
+    }
+
+    // AuditorAware 호출 횟수 (테스트, 벤치마크용)
+    public long getResolved() {
+        return resolved.sum();
+    }
+
+    private AuditStamp resolve() {
+        resolved.increment();
+        return new AuditStamp(auditorAware.getCurrentAuditor().orElse(null), LocalDateTime.now());
+    }
+}
@@ -0,0 +1,14 @@
+package study.datajpa.repository.support;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-24
+ * Time: 22:02
+ **/
+// 청크 하나가 커밋될 때마다 호출된다. (여러 스레드에서 호출될 수 있음)
+@FunctionalInterface
+public interface BulkUpdateProgress {
+
+    void onChunkCommitted(int completedChunks, int totalChunks, long updatedRows);
+}
@@ -0,0 +1,21 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-24
+ * Time: 22:05
+ **/
+@Getter
+@ToString
+@RequiredArgsConstructor
+public class BulkUpdateResult {
+
+    private final long updatedRows;
+    private final int chunks;
+    private final long elapsedMillis;
+}
@@ -0,0 +1,94 @@
+package study.datajpa.repository.support;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 11:30
+ **/
+
+/**
+ * (쿼리, 파라메터) 단위로 정확한 count 결과를 TTL 동안 캐시한다.
+ * 해당 엔티티에 insert/update/delete/벌크 연산이 커밋되면 무효화된다. (CountInvalidator)
+ * 파라메터 값마다 키가 생기기 때문에 최대 maxEntries 개까지만 캐시한다.
+ * replica에서 계산한 count는 캐시하지 않는다. (ReplicaRouter.isReplicaRead)
+ */
+public class CachedCountStrategy implements CountStrategy {
+
+    static final int DEFAULT_MAX_ENTRIES = 10_000;
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+    private final Duration ttl;
+    private final int maxEntries;
+    private final Clock clock;
+
+    public CachedCountStrategy(Duration ttl, int maxEntries) {
+        this(ttl, maxEntries, Clock.systemUTC());
+    }
+
+    CachedCountStrategy(Duration ttl, Clock clock) {
+        this(ttl, DEFAULT_MAX_ENTRIES, clock);
+    }
+
+    CachedCountStrategy(Duration ttl, int maxEntries, Clock clock) {
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    @Override
+    public long count(CountQuery query) {
+        // 커밋되지 않은 쓰기가 있는 트랜잭션의 count는 다른 트랜잭션과 다르기 때문에 캐시를 사용하지 않는다.
+        if (CountInvalidator.isWrittenInCurrentTransaction(query.getEntityName())) {
+            return query.getExactCount().getAsLong();
+        }
+
+        long now = clock.millis();
+        Entry entry = cache.get(query.getKey());
+        if (entry != null) {
+            if (entry.expiresAt > now) {
+                return entry.count;
+            }
+            cache.remove(query.getKey(), entry);
+        }
+
+        long count = query.getExactCount().getAsLong();
+        if (ReplicaRouter.isReplicaRead()) {
+            return count; // replica 지연만큼 오래된 값일 수 있다. (무효화 직후에 캐시하면 TTL 동안 남는다)
+        }
+        if (cache.size() >= maxEntries) {
+            cache.values().removeIf(expired -> expired.expiresAt <= now);
+            if (cache.size() >= maxEntries) {
+                return count; // 만료되지 않은 키로 가득 찬 경우 캐시하지 않는다.
+            }
+        }
+        cache.put(query.getKey(), new Entry(query.getEntityName(), count, now + ttl.toMillis()));
+        return count;
+    }
+
+    int size() {
+        return cache.size();
+    }
+
+    @Override
+    public void invalidate(String entityName) {
+        cache.values().removeIf(entry -> entry.entityName.equals(entityName));
+    }
+
+    private static class Entry {
+        private final String entityName;
+        private final long count;
+        private final long expiresAt;
+
+        private Entry(String entityName, long count, long expiresAt) {
+            this.entityName = entityName;
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
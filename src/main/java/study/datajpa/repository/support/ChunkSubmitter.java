@@ -0,0 +1,48 @@
+package study.datajpa.repository.support;
+
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-05
+ * Time: 16:20
+ **/
+
+/**
+ * 호출 하나가 chunkExecutor(AsyncConfig.CHUNK_EXECUTOR)에 동시에 넣는 청크 수를 스레드 수로 제한한다.
+ * 청크가 많아도 큐를 채우지 않고 호출한 스레드가 앞의 청크가 끝날때까지 대기한다.
+ * (큐가 가득 차면 AbortPolicy로 거절되기 때문에 한 호출이 큐를 모두 차지하면 다른 호출이 실패한다)
+ *
+ * 호출(execute) 마다 새로 만든다.
+ */
+final class ChunkSubmitter {
+
+    private final ThreadPoolTaskExecutor executor;
+    private final Semaphore inFlight;
+
+    ChunkSubmitter(ThreadPoolTaskExecutor executor) {
+        this.executor = executor;
+        this.inFlight = new Semaphore(executor.getMaxPoolSize());
+    }
+
+    <T> CompletableFuture<T> submit(Supplier<T> chunk) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("청크 실행 대기중 인터럽트", e);
+        }
+        try {
+            return CompletableFuture.supplyAsync(chunk, executor)
+                    .whenComplete((result, e) -> inFlight.release());
+        } catch (RuntimeException e) { // TaskRejectedException
+            inFlight.release();
+            throw e;
+        }
+    }
+}
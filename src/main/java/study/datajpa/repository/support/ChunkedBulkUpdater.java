@@ -0,0 +1,173 @@
+package study.datajpa.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.AsyncConfig;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import javax.persistence.metamodel.EntityType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-24
+ * Time: 22:15
+ **/
+
+/**
+ * JPQL 벌크 update를 PK 범위로 나눠서 실행한다.
+ *
+ * update 쿼리 한번으로 수백만 row를 수정하면 트랜잭션이 끝날때까지 모든 row에 락이 걸려서 다른 요청이 대기하게 된다.
+ * - PK 범위(chunkSize) 마다 별도의 트랜잭션으로 커밋해서 락을 잡는 시간을 줄인다.
+ * - 청크는 InListExecutor와 같은 chunkExecutor(AsyncConfig.CHUNK_EXECUTOR)에서 병렬로 실행한다.
+ * - 각 청크는 새 영속성 컨텍스트에서 실행되기 때문에 호출한 쪽의 영속성 컨텍스트를 비우지 않는다.
+ *   2차 캐시는 Hibernate가 청크마다 해당 엔티티 리전만 무효화한다.
+ *
+ * 주의
+ * - 청크 단위로 커밋되기 때문에 중간에 실패하면 일부 청크만 반영된다. (멱등한 update 에만 사용할것)
+ * - 트랜잭션 안에서 호출하면 바깥 트랜잭션의 락과 충돌할 수 있기 때문에 허용하지 않는다.
+ */
+@Slf4j
+@Component
+public class ChunkedBulkUpdater {
+
+    private static final String WHERE = "where";
+    private static final Pattern UPDATE_ALIAS = Pattern.compile("^\\s*update\\s+\\w+\\s+(\\w+)\\s+set\\s", Pattern.CASE_INSENSITIVE);
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final TransactionTemplate chunkTx;
+    private final ThreadPoolTaskExecutor chunkExecutor;
+
+    public ChunkedBulkUpdater(EntityManager em, EntityManagerFactory emf, PlatformTransactionManager transactionManager,
+                              @Qualifier(AsyncConfig.CHUNK_EXECUTOR) ThreadPoolTaskExecutor chunkExecutor) {
+        this.em = em;
+        this.emf = emf;
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    /**
+     * @param entityClass update 대상 엔티티
+     * @param updateJpql  alias를 사용한 update JPQL (ex. update Member m set m.age = m.age + 1 where m.age >= :age)
+     * @param params      JPQL 파라메터
+     * @param chunkSize   청크 하나의 PK 범위 (1 이상)
+     */
+    public BulkUpdateResult execute(Class<?> entityClass, String updateJpql, Map<String, Object> params,
+                                    long chunkSize, BulkUpdateProgress progress) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("청크 단위로 커밋하기 때문에 트랜잭션 밖에서 호출해야 합니다.");
+        }
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize는 1 이상이어야 합니다. chunkSize = " + chunkSize);
+        }
+        long start = System.currentTimeMillis();
+
+        Matcher matcher = UPDATE_ALIAS.matcher(updateJpql);
+        if (!matcher.find()) {
+            throw new IllegalArgumentException("alias를 사용한 update JPQL만 지원합니다. jpql = " + updateJpql);
+        }
+        EntityType<?> entityType = emf.getMetamodel().entity(entityClass);
+        String idName = entityType.getId(entityType.getIdType().getJavaType()).getName();
+        String chunkJpql = chunkJpql(updateJpql, matcher.group(1) + "." + idName + " between :chunkFromId and :chunkToId");
+
+        Object[] range = (Object[]) em.createQuery("select min(e." + idName + "), max(e." + idName + ") from " + entityType.getName() + " e")
+                .getSingleResult();
+        if (range[0] == null) {
+            return new BulkUpdateResult(0, 0, System.currentTimeMillis() - start);
+        }
+        long minId = ((Number) range[0]).longValue();
+        long maxId = ((Number) range[1]).longValue();
+        int totalChunks = (int) ((maxId - minId) / chunkSize + 1);
+
+        AtomicInteger completedChunks = new AtomicInteger();
+        AtomicLong updatedRows = new AtomicLong();
+        ChunkSubmitter submitter = new ChunkSubmitter(chunkExecutor);
+        List<CompletableFuture<Integer>> futures = new ArrayList<>();
+        RuntimeException rejected = null;
+        for (long from = minId; from <= maxId; from += chunkSize) {
+            long chunkFrom = from;
+            long chunkTo = Math.min(from + chunkSize - 1, maxId);
+            try {
+                futures.add(submitter.submit(() -> {
+                    int updated = chunkTx.execute(status -> {
+                        Query query = em.createQuery(chunkJpql)
+                                .setParameter("chunkFromId", chunkFrom)
+                                .setParameter("chunkToId", chunkTo);
+                        params.forEach(query::setParameter);
+                        return query.executeUpdate();
+                    });
+                    long total = updatedRows.addAndGet(updated);
+                    progress.onChunkCommitted(completedChunks.incrementAndGet(), totalChunks, total);
+                    return updated;
+                }));
+            } catch (RuntimeException e) { // 스레드풀 큐가 가득 찬 경우 (TaskRejectedException)
+                rejected = e;
+                break;
+            }
+        }
+
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException e) {
+            log.error("벌크 update 실패. 완료된 청크 {}/{}", completedChunks.get(), totalChunks);
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        if (rejected != null) { // 이미 실행한 청크가 끝날때까지 기다린 뒤에 실패
+            log.error("벌크 update 실패. 완료된 청크 {}/{}", completedChunks.get(), totalChunks);
+            throw rejected;
+        }
+        return new BulkUpdateResult(updatedRows.get(), totalChunks, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 원래 조건을 괄호로 감싸고 PK 범위 조건을 추가한다.
+     * where a or b -> where (a or b) and m.id between ... (괄호가 없으면 a or (b and m.id between ...) 로 해석된다.)
+     */
+    static String chunkJpql(String updateJpql, String chunkPredicate) {
+        int where = topLevelWhere(updateJpql);
+        if (where < 0) {
+            return updateJpql + " where " + chunkPredicate;
+        }
+        return updateJpql.substring(0, where) + "where (" + updateJpql.substring(where + WHERE.length()).trim() + ") and " + chunkPredicate;
+    }
+
+    // 서브쿼리(괄호 안), 문자열 리터럴 안의 where는 제외
+    private static int topLevelWhere(String jpql) {
+        int depth = 0;
+        boolean literal = false;
+        for (int i = 0; i < jpql.length(); i++) {
+            char c = jpql.charAt(i);
+            if (c == '\'') {
+                literal = !literal;
+            } else if (!literal && c == '(') {
+                depth++;
+            } else if (!literal && c == ')') {
+                depth--;
+            } else if (!literal && depth == 0 && jpql.regionMatches(true, i, WHERE, 0, WHERE.length())
+                    && (i == 0 || !Character.isJavaIdentifierPart(jpql.charAt(i - 1)))
+                    && (i + WHERE.length() == jpql.length() || !Character.isJavaIdentifierPart(jpql.charAt(i + WHERE.length())))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,177 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.expression.MapAccessor;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.BeanReference;
+import org.springframework.expression.spel.ast.CompoundExpression;
+import org.springframework.expression.spel.ast.PropertyOrFieldReference;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-23
+ * Time: 21:12
+ **/
+
+/**
+ * open projection(@Value SpEL)을 closed projection 처럼 실행한다.
+ * Spring data JPA의 open projection은 엔티티 전체를 조회하고 row 마다 SpEL을 해석해서 실행한다.
+ *
+ * - 애플리케이션 시작시 SpEL을 한번만 파싱하고, 컴파일이 가능한 식이라면 바이트코드로 컴파일해서 실행한다. (MIXED)
+ * - SpEL AST에서 참조하는 target.xxx 속성만 select 한다.
+ *   실행할때는 target을 조회한 컬럼 값의 Map으로 바꿔서 원래 식을 그대로 실행한다. (MapAccessor)
+ *
+ * 단일 @Value 메서드를 가진 projection 인터페이스만 지원한다.
+ * target.xxx 외의 참조(args, @bean, #변수, target 자체), default 메서드는 compile 시점에 거부한다.
+ */
+public class CompiledProjection<T> {
+
+    private static final String TARGET = "target";
+
+    private final Class<T> type;
+    private final Method accessor;
+    private final List<String> properties;
+    private final Expression expression;
+    private final EvaluationContext context;
+
+    private CompiledProjection(Class<T> type, Method accessor, List<String> properties, Expression expression) {
+        this.type = type;
+        this.accessor = accessor;
+        this.properties = properties;
+        this.expression = expression;
+
+        StandardEvaluationContext context = new StandardEvaluationContext();
+        context.addPropertyAccessor(new MapAccessor()); // 컴파일 가능한 PropertyAccessor
+        this.context = context;
+    }
+
+    public static <T> CompiledProjection<T> compile(Class<T> type) {
+        Method accessor = null;
+        for (Method method : type.getMethods()) {
+            if (method.isDefault()) {
+                throw new IllegalArgumentException("default 메서드는 지원하지 않습니다. method = " + method);
+            }
+            if (Modifier.isAbstract(method.getModifiers())) {
+                if (accessor != null || !method.isAnnotationPresent(Value.class)) {
+                    throw new IllegalArgumentException("@Value 메서드 하나만 가진 projection 만 지원합니다. type = " + type.getName());
+                }
+                accessor = method;
+            }
+        }
+        if (accessor == null) {
+            throw new IllegalArgumentException("@Value 메서드가 없습니다. type = " + type.getName());
+        }
+
+        // #{target.username + ' ' + target.age} -> select username, age
+        String value = accessor.getAnnotation(Value.class).value();
+        if (!value.startsWith("#{") || !value.endsWith("}")) {
+            throw new IllegalArgumentException("#{...} 형식의 SpEL만 지원합니다. value = " + value);
+        }
+        String body = value.substring(2, value.length() - 1);
+
+        SpelExpressionParser parser = new SpelExpressionParser(new SpelParserConfiguration(SpelCompilerMode.MIXED, type.getClassLoader()));
+        SpelExpression expression = parser.parseRaw(body);
+        List<String> properties = new ArrayList<>();
+        collectProperties(expression.getAST(), properties, value);
+        return new CompiledProjection<>(type, accessor, properties, expression);
+    }
+
+    /**
+     * target.xxx 속성을 찾는다. 루트 객체를 참조하는 식은 target.xxx 만 허용한다.
+     * - CompoundExpression(a.b.c)의 첫번째 노드만 루트 객체를 참조하고 나머지는 앞의 결과를 참조한다.
+     * - 메서드 인자, 연산자의 피연산자는 다시 루트 객체를 참조한다.
+     */
+    private static void collectProperties(SpelNode node, List<String> properties, String value) {
+        if (node instanceof CompoundExpression) {
+            SpelNode first = node.getChild(0);
+            int navigationFrom = 1;
+            if (isTarget(first)) {
+                SpelNode property = node.getChild(1);
+                if (!(property instanceof PropertyOrFieldReference)) {
+                    throw unsupported(value, property);
+                }
+                String name = ((PropertyOrFieldReference) property).getName();
+                if (!properties.contains(name)) {
+                    properties.add(name);
+                }
+                navigationFrom = 2;
+            } else {
+                collectProperties(first, properties, value);
+            }
+            for (int i = navigationFrom; i < node.getChildCount(); i++) {
+                collectArguments(node.getChild(i), properties, value);
+            }
+            return;
+        }
+        if (node instanceof PropertyOrFieldReference || node instanceof VariableReference || node instanceof BeanReference) {
+            throw unsupported(value, node);
+        }
+        collectArguments(node, properties, value);
+    }
+
+    private static void collectArguments(SpelNode node, List<String> properties, String value) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectProperties(node.getChild(i), properties, value);
+        }
+    }
+
+    private static boolean isTarget(SpelNode node) {
+        return node instanceof PropertyOrFieldReference && TARGET.equals(((PropertyOrFieldReference) node).getName());
+    }
+
+    private static IllegalArgumentException unsupported(String value, SpelNode node) {
+        return new IllegalArgumentException("target.속성 외의 참조는 지원하지 않습니다. value = " + value + ", node = " + node.toStringAST());
+    }
+
+    // select 절 (ex. m.username, m.age)
+    public String select(String alias) {
+        return properties.stream()
+                .map(property -> alias + "." + property)
+                .collect(Collectors.joining(", "));
+    }
+
+    // 조회 컬럼이 하나라면 Object[]가 아닌 값 자체가 넘어온다.
+    public T map(Object row) {
+        Object[] columns = row instanceof Object[] ? (Object[]) row : new Object[]{row};
+        Map<String, Object> values = new HashMap<>();
+        for (int i = 0; i < properties.size(); i++) {
+            values.put(properties.get(i), columns[i]);
+        }
+
+        Object result = expression.getValue(context, Collections.singletonMap(TARGET, values), accessor.getReturnType());
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.equals(accessor)) {
+                return result;
+            }
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return type.getSimpleName() + "(" + result + ")";
+                default:
+                    throw new UnsupportedOperationException(method.toString());
+            }
+        }));
+    }
+}
@@ -0,0 +1,90 @@
+package study.datajpa.repository.support;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.persistence.OptimisticLockException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 22:15
+ **/
+
+/**
+ * 낙관적 락 충돌시 지수 백오프 + full jitter로 재시도한다. (@RetryOnConflict)
+ * - 동시에 충돌한 쓰기들이 같은 간격으로 재시도하면 다시 충돌하기 때문에 간격을 랜덤하게 분산시킨다.
+ * - 트랜잭션은 시도마다 호출하는 쪽(@Transactional 메서드)에서 새로 시작/커밋한다.
+ *   커밋 시점의 flush에서 충돌이 나도 call 밖으로 예외가 나오기 때문에 재시도 대상이 된다.
+ * - 바깥 트랜잭션이 있으면 한번만 실행한다.
+ */
+@Component
+public class ConflictRetryExecutor {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder exhausted = new LongAdder();
+
+    public <T> T execute(int maxAttempts, long backoffMillis, long maxBackoffMillis, Call<T> call) throws Throwable {
+        calls.increment();
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return call.call();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return call.call();
+            } catch (ConcurrencyFailureException | OptimisticLockException e) {
+                conflicts.increment();
+                if (attempt >= maxAttempts) {
+                    exhausted.increment();
+                    throw e;
+                }
+                retries.increment();
+                sleep(backoff(attempt, backoffMillis, maxBackoffMillis));
+            }
+        }
+    }
+
+    public Map<String, Long> snapshot() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        result.put("calls", calls.sum());
+        result.put("conflicts", conflicts.sum());
+        result.put("retries", retries.sum());
+        result.put("exhausted", exhausted.sum());
+        return result;
+    }
+
+    // full jitter: 0 ~ min(maxBackoff, backoff * 2^(attempt - 1))
+    static long backoff(int attempt, long backoffMillis, long maxBackoffMillis) {
+        long ceiling = backoffMillis << Math.min(attempt - 1, 20);
+        if (ceiling <= 0 || ceiling > maxBackoffMillis) {
+            ceiling = maxBackoffMillis;
+        }
+        return ceiling <= 0 ? 0 : ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    private static void sleep(long millis) {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기중 인터럽트", e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Throwable;
+    }
+}
@@ -0,0 +1,140 @@
+package study.datajpa.repository.support;
+
+import lombok.RequiredArgsConstructor;
+import org.aspectj.lang.annotation.AfterReturning;
+import org.aspectj.lang.annotation.Aspect;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.HibernateException;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PersistEvent;
+import org.hibernate.event.spi.PersistEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.datajpa.entity.Member;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 12:20
+ **/
+
+/**
+ * 캐시된 count를 무효화한다.
+ * - insert/update/delete: Hibernate 이벤트 리스너 (em.persist, 변경감지 등 리포지토리를 거치지 않는 쓰기도 포함)
+ * - 벌크 연산: 영속성 컨텍스트를 거치지 않아 이벤트가 발생하지 않기 때문에 AOP로 처리
+ *
+ * 트랜잭션 안에서 발생한 쓰기는 커밋된 뒤에 무효화한다.
+ * 쓰기 시점에 무효화하면 커밋 전에 다른 트랜잭션이 이전 count를 다시 캐시할 수 있다.
+ * 커밋 전까지 쓰기가 발생한 트랜잭션에서는 해당 엔티티의 count를 캐시하지 않는다. (isWrittenInCurrentTransaction)
+ * persist 시점에도 기록해야 flush 되기 전의 엔티티가 같은 트랜잭션의 count에서 누락되지 않는다.
+ */
+@Aspect
+@Component
+@RequiredArgsConstructor
+public class CountInvalidator implements PersistEventListener, PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Object WRITTEN_ENTITIES = CountInvalidator.class.getName() + ".WRITTEN_ENTITIES";
+
+    private final EntityManagerFactory emf;
+    private final CountStrategy countStrategy;
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.PERSIST, this);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * 현재 트랜잭션에서 쓰기가 발생했고 아직 커밋되지 않은 엔티티인지
+     */
+    @SuppressWarnings("unchecked")
+    static boolean isWrittenInCurrentTransaction(String entityName) {
+        Set<String> written = (Set<String>) TransactionSynchronizationManager.getResource(WRITTEN_ENTITIES);
+        return written != null && written.contains(entityName);
+    }
+
+    @AfterReturning("execution(* study.datajpa.repository.MemberRepository+.bulk*(..))" +
+            " || execution(* study.datajpa.repository.MemberJpaRepository.bulk*(..))")
+    public void afterMemberBulkUpdate() {
+        written(Member.class.getName());
+    }
+
+    @Override
+    public void onPersist(PersistEvent event) throws HibernateException {
+        written(event.getSession().guessEntityName(event.getObject()));
+    }
+
+    @Override
+    public void onPersist(PersistEvent event, Map createdAlready) throws HibernateException {
+        onPersist(event);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        written(event.getPersister().getEntityName());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        written(event.getPersister().getEntityName());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        written(event.getPersister().getEntityName());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    // 트랜잭션이 없으면 바로 무효화, 있으면 커밋된 뒤에 한번만 무효화
+    @SuppressWarnings("unchecked")
+    private void written(String entityName) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            countStrategy.invalidate(entityName);
+            return;
+        }
+
+        Set<String> written = (Set<String>) TransactionSynchronizationManager.getResource(WRITTEN_ENTITIES);
+        if (written == null) {
+            Set<String> entities = new HashSet<>();
+            TransactionSynchronizationManager.bindResource(WRITTEN_ENTITIES, entities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    entities.forEach(countStrategy::invalidate);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(WRITTEN_ENTITIES);
+                }
+            });
+            written = entities;
+        }
+        written.add(entityName);
+    }
+}
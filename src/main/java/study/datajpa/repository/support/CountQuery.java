@@ -0,0 +1,47 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 11:20
+ **/
+
+/**
+ * totalCount 쿼리 정보
+ * - key: 쿼리 + 파라메터 (캐시 키로 사용)
+ * - entityName: 쓰기 발생시 캐시를 무효화할 단위
+ * - table: where 조건이 없는 전체 카운트일 경우에만 지정한다. (DB 통계 기반 추정치 사용 가능)
+ */
+@Getter
+public class CountQuery {
+
+    private final String key;
+    private final String entityName;
+    private final String table;
+    private final LongSupplier exactCount;
+
+    private CountQuery(String key, String entityName, String table, LongSupplier exactCount) {
+        this.key = key;
+        this.entityName = entityName;
+        this.table = table;
+        this.exactCount = exactCount;
+    }
+
+    public static CountQuery of(String entityName, String query, LongSupplier exactCount, Object... params) {
+        return new CountQuery(query + Arrays.toString(params), entityName, null, exactCount);
+    }
+
+    public static CountQuery ofTable(String entityName, String table, String query, LongSupplier exactCount) {
+        return new CountQuery(query, entityName, table, exactCount);
+    }
+
+    public boolean isWholeTable() {
+        return table != null;
+    }
+}
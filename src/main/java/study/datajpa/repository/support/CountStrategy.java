@@ -0,0 +1,21 @@
+package study.datajpa.repository.support;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 11:24
+ **/
+
+/**
+ * Page 조회시 totalCount를 구하는 전략
+ * 마지막 페이지인 경우 count 쿼리 자체를 생략하는것은 PageableExecutionUtils가 처리한다.
+ */
+public interface CountStrategy {
+
+    long count(CountQuery query);
+
+    // 엔티티에 쓰기가 발생했을 때 호출된다.
+    default void invalidate(String entityName) {
+    }
+}
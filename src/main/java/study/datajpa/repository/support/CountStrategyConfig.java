@@ -0,0 +1,41 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.persistence.EntityManager;
+import java.time.Duration;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 12:05
+ **/
+@Configuration
+public class CountStrategyConfig {
+
+    /**
+     * datajpa.paging.count-strategy
+     * - exact: 매번 count 쿼리 실행 (기존 동작)
+     * - cached: (쿼리, 파라메터) 단위로 TTL 동안 캐시 (기본값)
+     * - estimated: 전체 카운트는 DB 통계의 추정치, 조건이 있는 카운트는 캐시 사용
+     */
+    @Bean
+    public CountStrategy countStrategy(EntityManager em,
+                                       @Value("${datajpa.paging.count-strategy:cached}") String strategy,
+                                       @Value("${datajpa.paging.count-cache-ttl:30s}") Duration ttl,
+                                       @Value("${datajpa.paging.count-cache-max-entries:10000}") int maxEntries) {
+        switch (strategy) {
+            case "exact":
+                return new ExactCountStrategy();
+            case "cached":
+                return new CachedCountStrategy(ttl, maxEntries);
+            case "estimated":
+                return new EstimatedCountStrategy(em, new CachedCountStrategy(ttl, maxEntries));
+            default:
+                throw new IllegalArgumentException("지원하지 않는 count 전략입니다. strategy = " + strategy);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package study.datajpa.repository.support;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 11:42
+ **/
+
+/**
+ * where 조건이 없는 전체 카운트는 DB 통계(H2: INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE)의 추정치를 사용한다.
+ * 조건이 있는 카운트는 추정이 불가능하기 때문에 위임 전략(보통 캐시)을 사용한다.
+ * > 화면에 "약 N건" 정도만 보여주면 되는 경우에 사용
+ */
+public class EstimatedCountStrategy implements CountStrategy {
+
+    private final EntityManager em;
+    private final CountStrategy delegate;
+
+    public EstimatedCountStrategy(EntityManager em, CountStrategy delegate) {
+        this.em = em;
+        this.delegate = delegate;
+    }
+
+    @Override
+    public long count(CountQuery query) {
+        if (!query.isWholeTable()) {
+            return delegate.count(query);
+        }
+
+        List<?> result = em.createNativeQuery("select row_count_estimate from information_schema.tables where table_name = ?")
+                .setParameter(1, query.getTable().toUpperCase())
+                .getResultList();
+        if (result.isEmpty()) {
+            return delegate.count(query);
+        }
+        return ((Number) result.get(0)).longValue();
+    }
+
+    @Override
+    public void invalidate(String entityName) {
+        delegate.invalidate(entityName);
+    }
+}
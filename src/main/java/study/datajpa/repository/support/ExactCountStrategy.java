@@ -0,0 +1,16 @@
+package study.datajpa.repository.support;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-15
+ * Time: 11:26
+ **/
+// 기존 동작과 동일하게 매번 count 쿼리를 실행
+public class ExactCountStrategy implements CountStrategy {
+
+    @Override
+    public long count(CountQuery query) {
+        return query.getExactCount().getAsLong();
+    }
+}
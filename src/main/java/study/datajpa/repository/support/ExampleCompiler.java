@@ -0,0 +1,379 @@
+package study.datajpa.repository.support;
+
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.ExampleMatcher;
+import org.springframework.data.domain.ExampleMatcher.NullHandler;
+import org.springframework.data.domain.ExampleMatcher.PropertySpecifier;
+import org.springframework.data.domain.ExampleMatcher.StringMatcher;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.util.StringUtils;
+
+import javax.persistence.Column;
+import javax.persistence.EntityManager;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-27
+ * Time: 21:40
+ **/
+
+/**
+ * Query By Example의 probe를 ShapedSpecification으로 변환한다.
+ * 기본 QueryByExampleExecutor와 다른점
+ * - 연관관계(ManyToOne) 조인 타입을 지정할 수 있다. (기본 구현은 INNER JOIN만 가능)
+ *   연관 엔티티의 식별자만 조건이면 조인하지 않고 FK 컬럼(ex. team_id)을 바로 사용한다.
+ * - primitive 필드의 기본값(age = 0 등)은 matcher에 따로 지정하지 않았다면 조건에서 제외한다.
+ * - 조건 순서: PK -> 인덱스 컬럼(@Table indexes, FK) -> 일반 컬럼 -> 조인 테이블 컬럼
+ * - (matcher, probe에 값이 있는 필드, 조인 타입) 별로 조건 목록을 캐시하고, CriteriaQuery는 SpecificationCache가 재사용한다.
+ */
+@Component
+public class ExampleCompiler {
+
+    private static final int MAX_PLANS = 256;
+
+    private static final int SKIP = 0;
+    private static final int VALUE = 1;
+    private static final int IS_NULL = 2;
+
+    private final EntityManager em;
+    private final Map<Class<?>, List<ProbePath>> probePaths = new ConcurrentHashMap<>();
+    private final Map<PlanKey, List<Step<?>>> plans = new ConcurrentHashMap<>();
+
+    public ExampleCompiler(EntityManager em) {
+        this.em = em;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> ShapedSpecification<T> compile(Example<T> example, JoinType joinType) {
+        T probe = example.getProbe();
+        ExampleMatcher matcher = example.getMatcher();
+        List<ProbePath> paths = probePaths.computeIfAbsent(example.getProbeType(), this::resolvePaths);
+
+        // probe에서 값을 읽어서 필드별로 조건 사용 여부를 정한다.
+        Object[] values = new Object[paths.size()];
+        char[] states = new char[paths.size()];
+        for (int i = 0; i < paths.size(); i++) {
+            ProbePath path = paths.get(i);
+            Object value = matcher.isIgnoredPath(path.name) ? null : transform(matcher, path, path.read(probe));
+            values[i] = value;
+            states[i] = (char) state(matcher, path, value);
+        }
+
+        PlanKey key = new PlanKey(example.getProbeType(), matcher, joinType, new String(states));
+        List<Step<?>> plan = plans.get(key);
+        if (plan == null) {
+            plan = plan(paths, matcher, joinType, states);
+            if (plans.size() < MAX_PLANS) {
+                plans.putIfAbsent(key, plan);
+            }
+        }
+
+        ShapedSpecification<T> spec = null;
+        for (Step<?> step : plan) {
+            ShapedSpecification<T> next = ((Step<T>) step).create(values[step.index]);
+            if (spec == null) {
+                spec = next;
+            } else {
+                spec = (ShapedSpecification<T>) (matcher.isAllMatching() ? spec.and(next) : spec.or(next));
+            }
+        }
+        return spec == null ? ShapedSpecification.none() : spec;
+    }
+
+    private int state(ExampleMatcher matcher, ProbePath path, Object value) {
+        if (matcher.isIgnoredPath(path.name) || (path.parent != null && path.parent.ignored(matcher))) {
+            return SKIP;
+        }
+        if (value == null) {
+            // 연관 엔티티 내부 필드의 null은 항상 무시한다. (연관 엔티티 자체가 null인 경우만 is null 조건)
+            return matcher.getNullHandler() == NullHandler.INCLUDE && path.nullable ? IS_NULL : SKIP;
+        }
+        if (path.primitive && isDefault(value) && !matcher.getPropertySpecifiers().hasSpecifierForPath(path.name)) {
+            return SKIP;
+        }
+        return path.association ? SKIP : VALUE; // 연관 엔티티 자체는 내부 필드로 조건을 만든다.
+    }
+
+    private Object transform(ExampleMatcher matcher, ProbePath path, Object value) {
+        if (!matcher.getPropertySpecifiers().hasSpecifierForPath(path.name)) {
+            return value;
+        }
+        PropertySpecifier specifier = matcher.getPropertySpecifiers().getForPath(path.name);
+        Optional<Object> transformed = specifier.getPropertyValueTransformer().apply(Optional.ofNullable(value));
+        return transformed.orElse(null);
+    }
+
+    private List<Step<?>> plan(List<ProbePath> paths, ExampleMatcher matcher, JoinType joinType, char[] states) {
+        List<Step<?>> plan = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            ProbePath path = paths.get(i);
+            if (states[i] == IS_NULL) {
+                plan.add(isNullStep(i, path, joinType));
+            } else if (states[i] == VALUE) {
+                plan.add(valueStep(i, path, matcher, joinType));
+            }
+        }
+        return Collections.unmodifiableList(plan);
+    }
+
+    private <T> Step<T> isNullStep(int index, ProbePath path, JoinType joinType) {
+        String shape = "qbe:" + path.name + ":null" + joinShape(path, joinType);
+        return new Step<>(index, value -> ShapedSpecification.fixed(shape,
+                (root, query, cb) -> cb.isNull(path.path(root, joinType))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Step<T> valueStep(int index, ProbePath path, ExampleMatcher matcher, JoinType joinType) {
+        if (path.type != String.class) {
+            String shape = "qbe:" + path.name + joinShape(path, joinType);
+            return new Step<>(index, value -> ShapedSpecification.of(shape, value,
+                    (root, cb, parameter) -> cb.equal(path.path(root, joinType), parameter)));
+        }
+
+        StringMatcher stringMatcher = matcher.getDefaultStringMatcher();
+        boolean ignoreCase = matcher.isIgnoreCaseEnabled();
+        if (matcher.getPropertySpecifiers().hasSpecifierForPath(path.name)) {
+            PropertySpecifier specifier = matcher.getPropertySpecifiers().getForPath(path.name);
+            stringMatcher = specifier.getStringMatcher() != null ? specifier.getStringMatcher() : stringMatcher;
+            ignoreCase = specifier.getIgnoreCase() != null ? specifier.getIgnoreCase() : ignoreCase;
+        }
+
+        String shape = "qbe:" + path.name + ":" + stringMatcher + (ignoreCase ? ":ic" : "") + joinShape(path, joinType);
+        StringMatcher mode = stringMatcher;
+        boolean lower = ignoreCase;
+        Function<Object, Object> bind = value -> {
+            String text = lower ? value.toString().toLowerCase() : value.toString();
+            switch (mode) {
+                case DEFAULT:
+                case EXACT:
+                    return text;
+                case STARTING:
+                    return escape(text) + "%";
+                case ENDING:
+                    return "%" + escape(text);
+                case CONTAINING:
+                    return "%" + escape(text) + "%";
+                default:
+                    throw new IllegalArgumentException("지원하지 않는 StringMatcher 입니다. " + mode);
+            }
+        };
+        // REGEX 등은 조회 시점이 아니라 여기서 바로 실패시킨다.
+        bind.apply("");
+
+        return new Step<>(index, value -> ShapedSpecification.of(shape, bind.apply(value), (root, cb, parameter) -> {
+            Expression<String> column = (Expression<String>) path.path(root, joinType);
+            Expression<String> expression = lower ? cb.lower(column) : column;
+            if (mode == StringMatcher.DEFAULT || mode == StringMatcher.EXACT) {
+                return cb.equal(expression, parameter);
+            }
+            return cb.like(expression, (Expression<String>) parameter, '\\');
+        }));
+    }
+
+    private String joinShape(ProbePath path, JoinType joinType) {
+        return path.joined() ? ":" + joinType : "";
+    }
+
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    private static boolean isDefault(Object value) {
+        if (value instanceof Boolean) {
+            return !((Boolean) value);
+        }
+        if (value instanceof Character) {
+            return (Character) value == '\u0000';
+        }
+        return value instanceof Number && ((Number) value).doubleValue() == 0;
+    }
+
+    /**
+     * 엔티티의 조건 후보 필드 목록 (인덱스 우선 순서로 정렬)
+     * 기본 속성과 ManyToOne/OneToOne 연관 엔티티의 기본 속성(1단계)만 사용한다.
+     */
+    private List<ProbePath> resolvePaths(Class<?> type) {
+        EntityType<?> entity = em.getMetamodel().entity(type);
+        Set<String> indexed = indexedColumns(type);
+
+        List<ProbePath> paths = new ArrayList<>();
+        for (SingularAttribute<?, ?> attribute : entity.getSingularAttributes()) {
+            Field field = (Field) attribute.getJavaMember();
+            PersistentAttributeType attributeType = attribute.getPersistentAttributeType();
+            if (attributeType == PersistentAttributeType.BASIC) {
+                int rank = attribute.isId() ? 0 : indexed.contains(columnName(field)) ? 1 : 2;
+                paths.add(new ProbePath(null, attribute.getName(), field, rank, false, attribute.isOptional()));
+            } else if (attributeType == PersistentAttributeType.MANY_TO_ONE || attributeType == PersistentAttributeType.ONE_TO_ONE) {
+                ProbePath association = new ProbePath(null, attribute.getName(), field, 2, true, attribute.isOptional());
+                paths.add(association);
+                boolean foreignKey = attributeType == PersistentAttributeType.MANY_TO_ONE;
+
+                for (SingularAttribute<?, ?> nested : em.getMetamodel().entity(attribute.getJavaType()).getSingularAttributes()) {
+                    if (nested.getPersistentAttributeType() != PersistentAttributeType.BASIC) {
+                        continue;
+                    }
+                    // 연관 엔티티의 식별자는 FK 컬럼으로 비교한다. (조인 없음)
+                    boolean viaForeignKey = foreignKey && nested.isId();
+                    paths.add(new ProbePath(association, nested.getName(), (Field) nested.getJavaMember(),
+                            viaForeignKey ? 1 : 3, false, false, viaForeignKey));
+                }
+            }
+        }
+        paths.sort(Comparator.comparingInt((ProbePath path) -> path.rank).thenComparing(path -> path.name));
+        return Collections.unmodifiableList(paths);
+    }
+
+    private static Set<String> indexedColumns(Class<?> type) {
+        Set<String> columns = new HashSet<>();
+        Table table = type.getAnnotation(Table.class);
+        if (table == null) {
+            return columns;
+        }
+        for (Index index : table.indexes()) {
+            // 복합 인덱스는 선두 컬럼만 인덱스를 탈 수 있다.
+            String leading = index.columnList().split(",")[0].trim().split("\\s+")[0];
+            columns.add(leading.toLowerCase());
+        }
+        return columns;
+    }
+
+    // SpringPhysicalNamingStrategy와 동일하게 camelCase -> snake_case
+    private static String columnName(Field field) {
+        Column column = field.getAnnotation(Column.class);
+        if (column != null && StringUtils.hasText(column.name())) {
+            return column.name().toLowerCase();
+        }
+        return field.getName().replaceAll("([a-z0-9])([A-Z])", "$1_$2").toLowerCase();
+    }
+
+    private static class ProbePath {
+        private final ProbePath parent;
+        private final String name;
+        private final String attribute;
+        private final Field field;
+        private final Class<?> type;
+        private final int rank;
+        private final boolean association;
+        private final boolean nullable;
+        private final boolean viaForeignKey;
+        private final boolean primitive;
+
+        private ProbePath(ProbePath parent, String attribute, Field field, int rank, boolean association, boolean nullable) {
+            this(parent, attribute, field, rank, association, nullable, false);
+        }
+
+        private ProbePath(ProbePath parent, String attribute, Field field, int rank, boolean association, boolean nullable, boolean viaForeignKey) {
+            this.parent = parent;
+            this.name = parent == null ? attribute : parent.name + "." + attribute;
+            this.attribute = attribute;
+            this.field = field;
+            this.type = field.getType();
+            this.rank = rank;
+            this.association = association;
+            this.nullable = nullable;
+            this.viaForeignKey = viaForeignKey;
+            this.primitive = field.getType().isPrimitive();
+            ReflectionUtils.makeAccessible(field);
+        }
+
+        private boolean ignored(ExampleMatcher matcher) {
+            return matcher.isIgnoredPath(name);
+        }
+
+        private boolean joined() {
+            return parent != null && !viaForeignKey;
+        }
+
+        private Object read(Object probe) {
+            Object owner = parent == null ? probe : parent.read(probe);
+            return owner == null ? null : ReflectionUtils.getField(field, owner);
+        }
+
+        private Path<?> path(Root<?> root, JoinType joinType) {
+            if (parent == null) {
+                return root.get(attribute);
+            }
+            if (viaForeignKey) {
+                return root.get(parent.attribute).get(attribute);
+            }
+            return join(root, parent.attribute, joinType).get(attribute);
+        }
+
+        // 같은 연관관계의 조건이 여러개면 조인을 재사용한다.
+        private static From<?, ?> join(Root<?> root, String attribute, JoinType joinType) {
+            for (Join<?, ?> join : root.getJoins()) {
+                if (join.getAttribute().getName().equals(attribute) && join.getJoinType() == joinType) {
+                    return join;
+                }
+            }
+            return root.join(attribute, joinType);
+        }
+    }
+
+    private static class Step<T> {
+        private final int index;
+        private final Function<Object, ShapedSpecification<T>> factory;
+
+        private Step(int index, Function<Object, ShapedSpecification<T>> factory) {
+            this.index = index;
+            this.factory = factory;
+        }
+
+        private ShapedSpecification<T> create(Object value) {
+            return factory.apply(value);
+        }
+    }
+
+    private static class PlanKey {
+        private final Class<?> type;
+        private final ExampleMatcher matcher;
+        private final JoinType joinType;
+        private final String states;
+
+        private PlanKey(Class<?> type, ExampleMatcher matcher, JoinType joinType, String states) {
+            this.type = type;
+            this.matcher = matcher;
+            this.joinType = joinType;
+            this.states = states;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof PlanKey)) return false;
+            PlanKey planKey = (PlanKey) o;
+            return type.equals(planKey.type) && matcher.equals(planKey.matcher)
+                    && joinType == planKey.joinType && states.equals(planKey.states);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, matcher, joinType, states);
+        }
+    }
+}
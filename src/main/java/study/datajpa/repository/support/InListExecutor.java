@@ -0,0 +1,106 @@
+package study.datajpa.repository.support;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.AsyncConfig;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-04
+ * Time: 14:10
+ **/
+
+/**
+ * in (...) 조회에 사용할 값이 많을때 chunkSize 개씩 나눠서 조회하고 결과를 합친다.
+ * - 값의 개수마다 다른 SQL이 만들어지지 않도록 in 파라메터 수는 Hibernate가 2의 거듭제곱으로 맞춰준다.
+ *   (hibernate.query.in_clause_parameter_padding) -> chunkSize도 2의 거듭제곱이면 마지막 청크를 제외하고 모두 같은 SQL
+ * - DB마다 파라메터 수 제한이 있기 때문에 (ex. Oracle in 절 1000개) 한번에 바인딩하는 수를 chunkSize로 제한한다.
+ * - parallel 이면 청크마다 별도의 커넥션(읽기 전용 트랜잭션)에서 동시에 조회한다. (AsyncConfig.CHUNK_EXECUTOR)
+ *   호출한 쪽의 트랜잭션이 있으면 그 영속성 컨텍스트에서 조회해야 하기 때문에 순서대로 조회한다.
+ * 중복된 값은 제거하고 조회한다. 결과는 청크 순서대로 합치고 청크 안의 순서는 보장하지 않는다.
+ */
+@Component
+public class InListExecutor {
+
+    private final int chunkSize;
+    private final TransactionTemplate readOnlyTx;
+    private final TransactionTemplate chunkTx;
+    private final ThreadPoolTaskExecutor chunkExecutor;
+
+    public InListExecutor(PlatformTransactionManager transactionManager,
+                          @Value("${datajpa.in-list.chunk-size:512}") int chunkSize,
+                          @Qualifier(AsyncConfig.CHUNK_EXECUTOR) ThreadPoolTaskExecutor chunkExecutor) {
+        this.chunkSize = chunkSize;
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+        this.chunkTx = new TransactionTemplate(transactionManager);
+        this.chunkTx.setReadOnly(true);
+        this.chunkTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.chunkExecutor = chunkExecutor;
+    }
+
+    /**
+     * @param values     in 절에 바인딩할 값
+     * @param parallel   청크를 동시에 조회할지 여부 (트랜잭션 안에서는 무시)
+     * @param chunkQuery 청크 하나를 조회하는 쿼리
+     */
+    public <V, R> List<R> execute(Collection<V> values, boolean parallel, Function<List<V>, List<R>> chunkQuery) {
+        List<List<V>> chunks = chunks(values);
+        if (chunks.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (chunks.size() == 1 || !parallel || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return readOnlyTx.execute(status -> {
+                List<R> result = new ArrayList<>();
+                for (List<V> chunk : chunks) {
+                    result.addAll(chunkQuery.apply(chunk));
+                }
+                return result;
+            });
+        }
+
+        // 스레드풀이 가득 차서 거절되면 TaskRejectedException (RejectedExecutionException, 컨트롤러에서 503)
+        ChunkSubmitter submitter = new ChunkSubmitter(chunkExecutor);
+        List<CompletableFuture<List<R>>> futures = new ArrayList<>(chunks.size());
+        for (List<V> chunk : chunks) {
+            futures.add(submitter.submit(() -> chunkTx.execute(status -> chunkQuery.apply(chunk))));
+        }
+        List<R> result = new ArrayList<>();
+        try {
+            for (CompletableFuture<List<R>> future : futures) {
+                result.addAll(future.join());
+            }
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+        return result;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    private <V> List<List<V>> chunks(Collection<V> values) {
+        List<V> distinct = new ArrayList<>(new LinkedHashSet<>(values));
+        List<List<V>> chunks = new ArrayList<>((distinct.size() + chunkSize - 1) / chunkSize);
+        for (int from = 0; from < distinct.size(); from += chunkSize) {
+            chunks.add(distinct.subList(from, Math.min(from + chunkSize, distinct.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,65 @@
+package study.datajpa.repository.support;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 13:20
+ **/
+
+/**
+ * 쿼리 하나에 대한 인덱스 분석 결과 (IndexAdvisor)
+ */
+@Getter
+@ToString
+public class IndexAdvice {
+
+    private final String source;                                // ex) MemberRepository.findByUsername, @NamedQuery Member.findByUsername
+    private final String table;
+    private final List<String> equalityColumns = new ArrayList<>(); // =, in
+    private final List<String> rangeColumns = new ArrayList<>();    // >, <, between, like 'x%'
+    private final List<String> sortColumns = new ArrayList<>();
+    private List<String> indexColumns = new ArrayList<>();          // 추천 인덱스 컬럼 (순서대로)
+    private String usedIndex;                                       // 이미 있는 인덱스로 처리 가능하면 그 인덱스 이름
+    private String ddl;                                             // 추천 인덱스 생성 DDL
+
+    IndexAdvice(String source, String table) {
+        this.source = source;
+        this.table = table;
+    }
+
+    // 조건이 없거나, 조건 컬럼으로 시작하는 인덱스가 없으면 전체 스캔
+    public boolean isFullScan() {
+        return usedIndex == null;
+    }
+
+    void addEquality(String column) {
+        if (!equalityColumns.contains(column)) {
+            equalityColumns.add(column);
+        }
+    }
+
+    void addRange(String column) {
+        if (!rangeColumns.contains(column) && !equalityColumns.contains(column)) {
+            rangeColumns.add(column);
+        }
+    }
+
+    void addSort(String column) {
+        if (!sortColumns.contains(column)) {
+            sortColumns.add(column);
+        }
+    }
+
+    void recommend(List<String> indexColumns, String usedIndex, String ddl) {
+        this.indexColumns = indexColumns;
+        this.usedIndex = usedIndex;
+        this.ddl = ddl;
+    }
+}
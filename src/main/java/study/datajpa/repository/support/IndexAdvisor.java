@@ -0,0 +1,379 @@
+package study.datajpa.repository.support;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.core.RepositoryInformation;
+import org.springframework.data.repository.query.parser.Part;
+import org.springframework.data.repository.query.parser.PartTree;
+import org.springframework.data.repository.support.Repositories;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.metamodel.EntityType;
+import javax.sql.DataSource;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 13:40
+ **/
+
+/**
+ * 리포지토리 쿼리에서 조건/정렬 컬럼을 찾아서 필요한 인덱스를 추천한다.
+ * ddl-auto: create 는 PK, FK 인덱스만 만들기 때문에 조건 컬럼에 인덱스가 없으면 전체 스캔이 된다.
+ *
+ * 분석 대상
+ * - 메서드 이름으로 생성하는 쿼리 (PartTree)
+ * - @Query (JPQL, 네이티브 쿼리), @NamedQuery
+ * - MemberRepositoryImpl 처럼 코드에서 만드는 쿼리는 분석하지 않는다.
+ *
+ * 추천 인덱스 컬럼 순서: 동등 조건(=, in) -> 첫번째 범위 조건 (범위 조건이 없으면 정렬 컬럼)
+ * select 절은 대부분 엔티티 전체라서 커버링 인덱스는 추천하지 않는다.
+ *
+ * datajpa.index-advisor.apply=true 이면 추천 인덱스를 바로 생성한다. (로컬/테스트 용도, 운영은 로그의 DDL을 검토해서 반영)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "datajpa.index-advisor.enabled", havingValue = "true", matchIfMissing = true)
+public class IndexAdvisor {
+
+    private static final Pattern JPQL_ROOT = Pattern.compile("(?:from|update)\\s+(\\w+)\\s+(?:as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern NATIVE_ROOT = Pattern.compile("(?:from|update)\\s+(\\w+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CLAUSES = Pattern.compile("\\swhere\\s(.*?)(?:\\sgroup\\s+by\\s|\\sorder\\s+by\\s|$)|\\sorder\\s+by\\s(.*)$", Pattern.CASE_INSENSITIVE);
+    private static final String OPERATOR = "\\s*(=|<>|!=|>=|<=|>|<|in\\b|not\\s+in\\b|like\\b|between\\b|is\\b)";
+
+    private final ApplicationContext applicationContext;
+    private final SessionFactoryImplementor sessionFactory;
+    private final DataSource dataSource;
+    private final boolean apply;
+
+    private volatile List<IndexAdvice> lastAdvice = Collections.emptyList();
+
+    public IndexAdvisor(ApplicationContext applicationContext, EntityManagerFactory emf, DataSource dataSource,
+                        @Value("${datajpa.index-advisor.apply:false}") boolean apply) {
+        this.applicationContext = applicationContext;
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.dataSource = dataSource;
+        this.apply = apply;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() throws SQLException {
+        List<IndexAdvice> advice = analyze();
+        for (IndexAdvice each : advice) {
+            if (each.getIndexColumns().isEmpty()) {
+                log.info("[index-advisor] {} -> 조건 없음 (전체 조회)", each.getSource());
+            } else if (each.isFullScan()) {
+                log.warn("[index-advisor] {} -> 전체 스캔, 추천: {}", each.getSource(), each.getDdl());
+            } else if (each.getDdl() != null) {
+                log.info("[index-advisor] {} -> {} 사용 중, 추천: {}", each.getSource(), each.getUsedIndex(), each.getDdl());
+            }
+        }
+        if (apply) {
+            apply(advice);
+        }
+    }
+
+    public List<IndexAdvice> getLastAdvice() {
+        return lastAdvice;
+    }
+
+    public List<IndexAdvice> analyze() throws SQLException {
+        List<IndexAdvice> result = new ArrayList<>();
+        Set<String> usedNamedQueries = new HashSet<>();
+
+        Repositories repositories = new Repositories(applicationContext);
+        for (Class<?> domainClass : repositories) {
+            RepositoryInformation information = repositories.getRequiredRepositoryInformation(domainClass);
+            String repositoryName = information.getRepositoryInterface().getSimpleName();
+            for (Method method : information.getQueryMethods()) {
+                String source = repositoryName + "." + method.getName();
+                IndexAdvice advice = analyzeMethod(source, domainClass, method, usedNamedQueries);
+                if (advice != null) {
+                    result.add(advice);
+                }
+            }
+        }
+
+        for (EntityType<?> entity : sessionFactory.getMetamodel().getEntities()) {
+            for (NamedQuery namedQuery : namedQueries(entity.getJavaType())) {
+                if (!usedNamedQueries.contains(namedQuery.name())) {
+                    result.add(analyzeJpql("@NamedQuery " + namedQuery.name(), namedQuery.query()));
+                }
+            }
+        }
+
+        Map<String, Map<String, List<String>>> indexes = new LinkedHashMap<>();
+        for (IndexAdvice advice : result) {
+            if (advice.getTable() != null) {
+                recommend(advice, indexes.computeIfAbsent(advice.getTable(), this::existingIndexes));
+            }
+        }
+        lastAdvice = Collections.unmodifiableList(result);
+        return lastAdvice;
+    }
+
+    // 추천 인덱스 생성 (같은 DDL은 한번만)
+    public void apply(List<IndexAdvice> advice) throws SQLException {
+        Set<String> ddls = new HashSet<>();
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            for (IndexAdvice each : advice) {
+                if (each.getDdl() != null && ddls.add(each.getDdl())) {
+                    log.info("[index-advisor] {}", each.getDdl());
+                    statement.execute(each.getDdl());
+                }
+            }
+        }
+    }
+
+    private IndexAdvice analyzeMethod(String source, Class<?> domainClass, Method method, Set<String> usedNamedQueries) {
+        Query query = AnnotatedElementUtils.findMergedAnnotation(method, Query.class);
+        if (query != null && !query.value().isEmpty()) {
+            return query.nativeQuery() ? analyzeNative(source, query.value()) : analyzeJpql(source, query.value());
+        }
+
+        // Spring Data는 @Query가 없으면 "엔티티명.메서드명" NamedQuery를 먼저 찾는다.
+        String namedQueryName = query != null && !query.name().isEmpty() ? query.name() : domainClass.getSimpleName() + "." + method.getName();
+        for (NamedQuery namedQuery : namedQueries(domainClass)) {
+            if (namedQuery.name().equals(namedQueryName)) {
+                usedNamedQueries.add(namedQuery.name());
+                return analyzeJpql(source + " (@NamedQuery)", namedQuery.query());
+            }
+        }
+
+        PartTree tree;
+        try {
+            tree = new PartTree(method.getName(), domainClass);
+        } catch (RuntimeException e) {
+            log.debug("[index-advisor] {} 분석 불가", source, e);
+            return null;
+        }
+
+        AbstractEntityPersister persister = persister(domainClass.getName());
+        IndexAdvice advice = new IndexAdvice(source, persister.getTableName().toLowerCase());
+        for (PartTree.OrPart orPart : tree) {
+            for (Part part : orPart) {
+                for (String column : columns(persister, part.getProperty().toDotPath())) {
+                    switch (part.getType()) {
+                        case SIMPLE_PROPERTY:
+                        case IN:
+                        case TRUE:
+                        case FALSE:
+                        case IS_NULL:
+                            advice.addEquality(column);
+                            break;
+                        case GREATER_THAN:
+                        case GREATER_THAN_EQUAL:
+                        case LESS_THAN:
+                        case LESS_THAN_EQUAL:
+                        case BETWEEN:
+                        case AFTER:
+                        case BEFORE:
+                        case STARTING_WITH:
+                            advice.addRange(column);
+                            break;
+                        default:
+                            // containing, ending with, not ... 은 인덱스를 사용할 수 없다.
+                    }
+                }
+            }
+        }
+        for (Sort.Order order : tree.getSort()) {
+            columns(persister, order.getProperty()).forEach(advice::addSort);
+        }
+        return advice;
+    }
+
+    private IndexAdvice analyzeJpql(String source, String jpql) {
+        Matcher root = JPQL_ROOT.matcher(jpql);
+        if (!root.find()) {
+            return new IndexAdvice(source, null);
+        }
+        AbstractEntityPersister persister = persister(entityName(root.group(1)));
+        String alias = root.group(2);
+        IndexAdvice advice = new IndexAdvice(source, persister.getTableName().toLowerCase());
+
+        Pattern predicate = Pattern.compile("\\b" + alias + "\\.([\\w.]+)" + OPERATOR, Pattern.CASE_INSENSITIVE);
+        Pattern order = Pattern.compile("\\b" + alias + "\\.([\\w.]+)");
+        collect(jpql, predicate, order, advice, property -> columns(persister, property));
+        return advice;
+    }
+
+    private IndexAdvice analyzeNative(String source, String sql) {
+        Matcher root = NATIVE_ROOT.matcher(sql);
+        if (!root.find()) {
+            return new IndexAdvice(source, null);
+        }
+        IndexAdvice advice = new IndexAdvice(source, root.group(1).toLowerCase());
+        Pattern predicate = Pattern.compile("\\b(?:\\w+\\.)?(\\w+)" + OPERATOR, Pattern.CASE_INSENSITIVE);
+        Pattern order = Pattern.compile("\\b(?:\\w+\\.)?(\\w+)");
+        collect(sql, predicate, order, advice, column -> Collections.singletonList(column.toLowerCase()));
+        return advice;
+    }
+
+    private void collect(String query, Pattern predicate, Pattern order, IndexAdvice advice,
+                         Function<String, List<String>> columns) {
+        Matcher clauses = CLAUSES.matcher(query);
+        while (clauses.find()) {
+            if (clauses.group(1) != null) {
+                Matcher matcher = predicate.matcher(clauses.group(1));
+                while (matcher.find()) {
+                    String operator = matcher.group(2).toLowerCase();
+                    for (String column : columns.apply(matcher.group(1))) {
+                        if (operator.equals("=") || operator.equals("in") || operator.equals("is")) {
+                            advice.addEquality(column);
+                        } else if (!operator.equals("<>") && !operator.equals("!=") && !operator.startsWith("not")) {
+                            advice.addRange(column);
+                        }
+                    }
+                }
+            }
+            if (clauses.group(2) != null) {
+                Matcher matcher = order.matcher(clauses.group(2));
+                while (matcher.find()) {
+                    String property = matcher.group(1);
+                    if (!property.equalsIgnoreCase("asc") && !property.equalsIgnoreCase("desc")) {
+                        columns.apply(property).forEach(advice::addSort);
+                    }
+                }
+            }
+        }
+    }
+
+    private void recommend(IndexAdvice advice, Map<String, List<String>> existing) {
+        List<String> recommended = new ArrayList<>(advice.getEqualityColumns());
+        if (!advice.getRangeColumns().isEmpty()) {
+            recommended.add(advice.getRangeColumns().get(0));
+        } else {
+            for (String sort : advice.getSortColumns()) {
+                if (!recommended.contains(sort)) {
+                    recommended.add(sort);
+                }
+            }
+        }
+        if (recommended.isEmpty()) {
+            advice.recommend(recommended, null, null);
+            return;
+        }
+
+        // 조건 컬럼으로 시작하는 인덱스가 있으면 전체 스캔은 아니다.
+        String usedIndex = null;
+        boolean covered = false;
+        for (Map.Entry<String, List<String>> index : existing.entrySet()) {
+            List<String> columns = index.getValue();
+            if (advice.getEqualityColumns().contains(columns.get(0))
+                    || (!advice.getRangeColumns().isEmpty() && advice.getRangeColumns().get(0).equals(columns.get(0)))) {
+                usedIndex = usedIndex == null ? index.getKey() : usedIndex;
+            }
+            if (columns.size() >= recommended.size() && columns.subList(0, recommended.size()).equals(recommended)) {
+                usedIndex = index.getKey();
+                covered = true;
+            }
+        }
+
+        String ddl = covered ? null : "create index if not exists idx_" + advice.getTable() + "_" + String.join("_", recommended)
+                + " on " + advice.getTable() + " (" + String.join(", ", recommended) + ")";
+        advice.recommend(recommended, usedIndex, ddl);
+    }
+
+    // 테이블의 인덱스 (인덱스명 -> 컬럼 순서대로)
+    private Map<String, List<String>> existingIndexes(String table) {
+        Map<String, Map<Integer, String>> indexes = new LinkedHashMap<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase() : table;
+            try (ResultSet rs = metaData.getIndexInfo(null, null, tableName, false, true)) {
+                while (rs.next()) {
+                    String indexName = rs.getString("INDEX_NAME");
+                    String column = rs.getString("COLUMN_NAME");
+                    if (indexName != null && column != null) {
+                        indexes.computeIfAbsent(indexName.toLowerCase(), key -> new TreeMap<>())
+                                .put((int) rs.getShort("ORDINAL_POSITION"), column.toLowerCase());
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("인덱스 정보를 조회할 수 없습니다. table=" + table, e);
+        }
+
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        indexes.forEach((name, columns) -> result.put(name, new ArrayList<>(columns.values())));
+        return result;
+    }
+
+    private List<String> columns(AbstractEntityPersister persister, String property) {
+        try {
+            List<String> columns = new ArrayList<>();
+            for (String column : persister.getPropertyColumnNames(property)) {
+                columns.add(column.toLowerCase());
+            }
+            return columns;
+        } catch (RuntimeException e) {
+            // 식별자(id) 등
+            if (property.equals(persister.getIdentifierPropertyName())) {
+                List<String> columns = new ArrayList<>();
+                for (String column : persister.getIdentifierColumnNames()) {
+                    columns.add(column.toLowerCase());
+                }
+                return columns;
+            }
+            return Collections.emptyList(); // 조인한 엔티티의 속성 등
+        }
+    }
+
+    private String entityName(String jpqlEntityName) {
+        for (EntityType<?> entity : sessionFactory.getMetamodel().getEntities()) {
+            if (entity.getName().equals(jpqlEntityName)) {
+                return entity.getJavaType().getName();
+            }
+        }
+        return jpqlEntityName;
+    }
+
+    private AbstractEntityPersister persister(String entityName) {
+        return (AbstractEntityPersister) sessionFactory.getMetamodel().entityPersister(entityName);
+    }
+
+    private static List<NamedQuery> namedQueries(Class<?> entityClass) {
+        List<NamedQuery> result = new ArrayList<>();
+        NamedQuery namedQuery = entityClass.getAnnotation(NamedQuery.class);
+        if (namedQuery != null) {
+            result.add(namedQuery);
+        }
+        NamedQueries namedQueries = entityClass.getAnnotation(NamedQueries.class);
+        if (namedQueries != null) {
+            result.addAll(Arrays.asList(namedQueries.value()));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,260 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.Session;
+import org.hibernate.TypeHelper;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.transform.ResultTransformer;
+import org.hibernate.type.Type;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 20:10
+ **/
+
+/**
+ * 네이티브 쿼리 결과 컬럼을 DTO 생성자, 인터페이스 projection에 바로 바인딩한다.
+ * - 엔티티를 만들지 않고 영속성 컨텍스트에도 올리지 않는다. (스냅샷, 지연로딩 프록시 없음)
+ * - 컬럼 타입을 addScalar로 지정하기 때문에 Hibernate가 ResultSetMetaData로 타입을 추론하지 않는다.
+ * - DTO 생성자는 MethodHandle로 한번만 찾아두고 row 마다 호출한다. (JPQL new 오퍼레이션은 row 마다 리플렉션 호출)
+ * - 인터페이스 projection은 프록시 클래스, getter -> 컬럼 위치를 미리 계산해둔다.
+ *   중첩 projection(ex. getTeam().getName())의 컬럼 별칭은 team_name, 컬럼이 모두 null 이면 getTeam()은 null
+ *
+ * 쿼리의 컬럼 별칭은 columns()와 같아야 한다.
+ * 인터페이스의 getter가 아닌 메서드, default 메서드는 projection()을 만들때 거부한다. (row를 읽는 시점에 실패하지 않도록)
+ */
+public class ProjectionMapper<T> implements ResultTransformer {
+
+    private final Class<T> type;
+    private final List<String> columns;
+    private final List<Class<?>> columnTypes;
+    private final RowFactory factory;
+
+    private ProjectionMapper(Class<T> type, List<String> columns, List<Class<?>> columnTypes, RowFactory factory) {
+        this.type = type;
+        this.columns = Collections.unmodifiableList(columns);
+        this.columnTypes = Collections.unmodifiableList(columnTypes);
+        this.factory = factory;
+    }
+
+    /**
+     * DTO 생성자 바인딩
+     * @param columns 생성자 파라메터 순서대로 컬럼 별칭
+     */
+    public static <T> ProjectionMapper<T> constructor(Class<T> type, String... columns) {
+        Constructor<?> constructor = null;
+        for (Constructor<?> candidate : type.getConstructors()) {
+            if (candidate.getParameterCount() == columns.length) {
+                if (constructor != null) {
+                    throw new IllegalArgumentException("파라메터 수가 같은 생성자가 여러개 입니다. type = " + type.getName());
+                }
+                constructor = candidate;
+            }
+        }
+        if (constructor == null) {
+            throw new IllegalArgumentException("파라메터가 " + columns.length + "개인 public 생성자가 없습니다. type = " + type.getName());
+        }
+
+        MethodHandle handle;
+        try {
+            // (Object[]) -> Object 로 변환해서 invokeExact로 호출 (primitive 파라메터는 언박싱)
+            handle = MethodHandles.publicLookup().unreflectConstructor(constructor)
+                    .asType(MethodType.genericMethodType(columns.length))
+                    .asSpreader(Object[].class, columns.length);
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(e);
+        }
+        return new ProjectionMapper<>(type, Arrays.asList(columns), Arrays.asList(constructor.getParameterTypes()),
+                row -> (Object) handle.invokeExact(row));
+    }
+
+    /**
+     * 인터페이스 projection 바인딩 (getter 이름 = 컬럼 별칭)
+     */
+    public static <T> ProjectionMapper<T> projection(Class<T> type) {
+        List<String> columns = new ArrayList<>();
+        List<Class<?>> columnTypes = new ArrayList<>();
+        ProxyFactory proxyFactory = proxyFactory(type, "", columns, columnTypes);
+        return new ProjectionMapper<>(type, columns, columnTypes, proxyFactory::create);
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    /**
+     * 컬럼 타입, 결과 변환을 지정한 네이티브 쿼리
+     */
+    @SuppressWarnings({"unchecked", "deprecation"})
+    public NativeQuery<T> createNativeQuery(Session session, String sql) {
+        NativeQuery<?> query = session.createNativeQuery(sql);
+        TypeHelper typeHelper = session.getSessionFactory().getTypeHelper();
+        for (int i = 0; i < columns.size(); i++) {
+            Type columnType = typeHelper.basic(ClassUtils.resolvePrimitiveIfNecessary(columnTypes.get(i)));
+            if (columnType != null) {
+                query.addScalar(columns.get(i), columnType);
+            } else {
+                query.addScalar(columns.get(i));
+            }
+        }
+        query.setResultTransformer(this);
+        return (NativeQuery<T>) query;
+    }
+
+    public T map(Object[] row) {
+        try {
+            return type.cast(factory.create(row));
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public Object transformTuple(Object[] tuple, String[] aliases) {
+        return map(tuple);
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public List transformList(List collection) {
+        return collection;
+    }
+
+    private static ProxyFactory proxyFactory(Class<?> type, String prefix, List<String> columns, List<Class<?>> columnTypes) {
+        if (!type.isInterface()) {
+            throw new IllegalArgumentException("인터페이스 projection만 지원합니다. type = " + type.getName());
+        }
+
+        // getMethods()는 순서가 정해져있지 않기 때문에 이름순으로 컬럼 순서를 정한다.
+        Method[] methods = type.getMethods();
+        Arrays.sort(methods, Comparator.comparing(Method::getName));
+
+        Map<Method, Object> accessors = new HashMap<>(); // 컬럼 위치(Integer) 또는 중첩 projection(ProxyFactory)
+        for (Method method : methods) {
+            if (Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.isDefault()) {
+                // Java 8 프록시에서는 default 메서드를 호출할 방법이 없다. (InvocationHandler.invokeDefault는 Java 16 부터)
+                throw new IllegalArgumentException("default 메서드는 지원하지 않습니다. method = " + method);
+            }
+            String property = property(method);
+            Class<?> returnType = method.getReturnType();
+            if (returnType.isInterface() && !returnType.getName().startsWith("java.")) {
+                accessors.put(method, proxyFactory(returnType, prefix + property + "_", columns, columnTypes));
+            } else {
+                accessors.put(method, columns.size());
+                columns.add(prefix + property);
+                columnTypes.add(returnType);
+            }
+        }
+        return new ProxyFactory(type, accessors);
+    }
+
+    private static String property(Method method) {
+        String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3 && method.getParameterCount() == 0) {
+            return Character.toLowerCase(name.charAt(3)) + name.substring(4);
+        }
+        if (name.startsWith("is") && name.length() > 2 && method.getParameterCount() == 0) {
+            return Character.toLowerCase(name.charAt(2)) + name.substring(3);
+        }
+        throw new IllegalArgumentException("getter 가 아닌 메서드는 지원하지 않습니다. method = " + method);
+    }
+
+    @FunctionalInterface
+    private interface RowFactory {
+        Object create(Object[] row) throws Throwable;
+    }
+
+    // 프록시 클래스 생성자를 한번만 찾아두고 row 마다 InvocationHandler만 새로 만든다.
+    private static class ProxyFactory {
+        private final Class<?> type;
+        private final Map<Method, Object> accessors;
+        private final Map<Method, ProxyFactory> nestedFactories = new HashMap<>();
+        private final List<Integer> columnIndexes = new ArrayList<>(); // 중첩 projection 컬럼 포함
+        private final MethodHandle proxyConstructor;
+
+        private ProxyFactory(Class<?> type, Map<Method, Object> accessors) {
+            this.type = type;
+            this.accessors = accessors;
+            accessors.forEach((method, accessor) -> {
+                if (accessor instanceof Integer) {
+                    columnIndexes.add((Integer) accessor);
+                } else {
+                    ProxyFactory nested = (ProxyFactory) accessor;
+                    nestedFactories.put(method, nested);
+                    columnIndexes.addAll(nested.columnIndexes);
+                }
+            });
+            try {
+                Class<?> proxyClass = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> null).getClass();
+                Constructor<?> constructor = proxyClass.getConstructor(InvocationHandler.class);
+                constructor.setAccessible(true); // public이 아닌 인터페이스의 프록시 클래스는 public이 아니다.
+                this.proxyConstructor = MethodHandles.lookup()
+                        .unreflectConstructor(constructor)
+                        .asType(MethodType.methodType(Object.class, InvocationHandler.class));
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalArgumentException(e);
+            }
+        }
+
+        private Object create(Object[] row) throws Throwable {
+            // 중첩 projection은 row 마다 한번만 만든다. (getter를 호출할때마다 만들지 않도록)
+            Map<Method, Object> nested = nestedFactories.isEmpty() ? Collections.emptyMap() : new HashMap<>();
+            for (Map.Entry<Method, ProxyFactory> entry : nestedFactories.entrySet()) {
+                nested.put(entry.getKey(), entry.getValue().createOrNull(row));
+            }
+            InvocationHandler handler = (proxy, method, args) -> {
+                Object accessor = accessors.get(method);
+                if (accessor instanceof Integer) {
+                    return row[(Integer) accessor];
+                }
+                if (accessor != null) {
+                    return nested.get(method);
+                }
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "toString":
+                        return type.getSimpleName() + Arrays.toString(row);
+                    default:
+                        throw new UnsupportedOperationException(method.toString());
+                }
+            };
+            return (Object) proxyConstructor.invokeExact(handler);
+        }
+
+        // left join 으로 연관관계가 없는 row는 중첩 projection의 컬럼이 모두 null -> null 반환 (ex. 팀이 없는 회원의 getTeam())
+        private Object createOrNull(Object[] row) throws Throwable {
+            for (int index : columnIndexes) {
+                if (row[index] != null) {
+                    return create(row);
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package study.datajpa.repository.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+import study.datajpa.repository.ReadOnlyQuery;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-22
+ * Time: 13:30
+ **/
+
+/**
+ * @ReadOnlyQuery 처리
+ * - 트랜잭션이 없으면: 읽기 전용 트랜잭션 (스프링이 FlushMode.MANUAL, session.setDefaultReadOnly(true) 설정)
+ * - 트랜잭션이 있으면: 바깥 트랜잭션을 그대로 따른다.
+ *   읽기/쓰기 트랜잭션에서 읽기 전용으로 조회하면 그 엔티티는 트랜잭션이 끝날때까지 읽기 전용으로 남기 때문에
+ *   호출한 쪽에서 수정해도 예외 없이 DB에 반영되지 않는다.
+ */
+@Aspect
+@Component
+public class ReadOnlyQueryAspect {
+
+    private static final String[] QUERY_PREFIXES = {"find", "get", "read", "query", "count", "exists", "search"};
+
+    private final TransactionTemplate readOnlyTx;
+    private final Map<MethodClassKey, Boolean> readOnlyMethods = new ConcurrentHashMap<>();
+
+    public ReadOnlyQueryAspect(PlatformTransactionManager transactionManager) {
+        this.readOnlyTx = new TransactionTemplate(transactionManager);
+        this.readOnlyTx.setReadOnly(true);
+    }
+
+    @Around("target(study.datajpa.repository.MemberRepository) || target(study.datajpa.repository.TeamRepository)")
+    public Object readOnly(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<?> targetClass = joinPoint.getTarget().getClass();
+        if (!readOnlyMethods.computeIfAbsent(new MethodClassKey(method, targetClass), key -> isReadOnlyQuery(method, targetClass))) {
+            return joinPoint.proceed();
+        }
+
+        // 바깥 트랜잭션이 있으면 읽기 전용 여부는 바깥 트랜잭션이 정한다.
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        try {
+            return readOnlyTx.execute(status -> {
+                try {
+                    return joinPoint.proceed();
+                } catch (Throwable e) {
+                    throw new ProceedException(e);
+                }
+            });
+        } catch (ProceedException e) {
+            throw e.getCause();
+        }
+    }
+
+    private boolean isReadOnlyQuery(Method method, Class<?> targetClass) {
+        // 리포지토리 프록시의 메서드로 찾아야 MemberRepositoryCustom 등 상위 인터페이스에 선언한 애노테이션까지 찾는다.
+        Method specificMethod = ClassUtils.getMostSpecificMethod(method, targetClass);
+        if (AnnotatedElementUtils.hasAnnotation(specificMethod, ReadOnlyQuery.class)) {
+            return true;
+        }
+        for (Class<?> repositoryInterface : targetClass.getInterfaces()) {
+            if (repositoryInterface.isAnnotationPresent(ReadOnlyQuery.class)) {
+                return isQueryMethod(method);
+            }
+        }
+        return false;
+    }
+
+    private boolean isQueryMethod(Method method) {
+        for (String prefix : QUERY_PREFIXES) {
+            if (method.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class ProceedException extends RuntimeException {
+        ProceedException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
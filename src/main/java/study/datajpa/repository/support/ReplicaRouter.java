@@ -0,0 +1,245 @@
+package study.datajpa.repository.support;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-01
+ * Time: 20:10
+ **/
+
+/**
+ * 읽기 전용 트랜잭션(@Transactional(readOnly = true), @ReadOnlyQuery)은 replica, 그 외에는 primary 커넥션 풀을 사용한다.
+ * - 트랜잭션 시작 시점(doBegin)에는 아직 readOnly 여부가 트랜잭션 동기화에 등록되지 않았기 때문에
+ *   LazyConnectionDataSourceProxy로 감싸서 첫 쿼리를 실행할때 커넥션을 가져온다. (dataSource())
+ * - replica 지연(lag)은 heartbeat로 확인한다.
+ *   primary의 replica_heartbeat 테이블에 주기적으로 현재 시간을 쓰고, replica에 복제된 값과 비교한다.
+ *   지연이 maxLag 보다 크거나 조회에 실패한 replica는 제외하고, 사용할수 있는 replica가 없으면 primary로 조회한다.
+ * - replica가 여러개면 라운드로빈
+ * - replica에서 읽은 값은 maxLag 만큼 오래된 값일 수 있기 때문에 캐시에 넣지 않는다.
+ *   replica로 보낸 트랜잭션의 세션은 CacheMode.GET (2차 캐시, 쿼리 캐시는 읽기만 한다)
+ *   count 캐시도 isReplicaRead()로 확인해서 저장하지 않는다. (CachedCountStrategy)
+ *   ex) 벌크 연산으로 리전이 비워진 직전에 replica에서 이전 version을 캐시하면 읽기/쓰기 트랜잭션의 em.find가
+ *       캐시된 version으로 수정해서 캐시가 만료될때까지 낙관적 락 충돌이 난다.
+ */
+@Slf4j
+public class ReplicaRouter implements AutoCloseable {
+
+    public static final String PRIMARY = "primary";
+    private static final String REPLICA_READ = ReplicaRouter.class.getName() + ".REPLICA_READ";
+
+    private final HikariDataSource primary;
+    private final List<Replica> replicas;
+    private final Duration maxLag;
+    private final DataSource dataSource;
+    private final ScheduledExecutorService lagChecker;
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder primaryRoutes = new LongAdder();
+    private final LongAdder fallbackRoutes = new LongAdder(); // 읽기 전용인데 replica가 없어서 primary로 보낸 수
+
+    public ReplicaRouter(HikariDataSource primary, List<HikariDataSource> replicas, Duration maxLag, Duration lagCheckInterval) {
+        this.primary = primary;
+        List<Replica> list = new ArrayList<>();
+        for (HikariDataSource replica : replicas) {
+            list.add(new Replica(replica));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.maxLag = maxLag;
+        this.dataSource = new LazyConnectionDataSourceProxy(new RoutingDataSource());
+
+        checkLag(); // 첫 확인 전에는 replica를 사용하지 않는다.
+        this.lagChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-checker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = lagCheckInterval.toMillis();
+        lagChecker.scheduleWithFixedDelay(this::checkLag, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // EntityManagerFactory, JdbcTemplate 등이 사용하는 DataSource
+    public DataSource dataSource() {
+        return dataSource;
+    }
+
+    /**
+     * heartbeat를 primary에 쓰고, replica 별 지연을 다시 계산한다.
+     */
+    public void checkLag() {
+        try {
+            writeHeartbeat();
+        } catch (SQLException e) {
+            log.warn("replica heartbeat 기록 실패", e);
+        }
+        long now = System.currentTimeMillis();
+        for (Replica replica : replicas) {
+            replica.check(now, maxLag.toMillis());
+        }
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        Map<String, Object> primaryStats = poolStats(primary);
+        primaryStats.put("routes", primaryRoutes.sum());
+        primaryStats.put("readOnlyFallbacks", fallbackRoutes.sum());
+        result.put(PRIMARY, primaryStats);
+        for (Replica replica : replicas) {
+            Map<String, Object> replicaStats = poolStats(replica.pool);
+            replicaStats.put("routes", replica.routes.sum());
+            replicaStats.put("available", replica.available);
+            replicaStats.put("lagMillis", replica.lagMillis);
+            result.put(replica.pool.getPoolName(), replicaStats);
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        lagChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+        primary.close();
+    }
+
+    private DataSource route() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            primaryRoutes.increment();
+            return primary;
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), Math.max(size, 1));
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (replica.available) {
+                replica.routes.increment();
+                markReplicaRead();
+                return replica.pool;
+            }
+        }
+        fallbackRoutes.increment();
+        primaryRoutes.increment();
+        return primary;
+    }
+
+    /**
+     * 현재 트랜잭션이 replica 커넥션을 사용하는지 (replica에서 읽은 값은 캐시하지 않는다)
+     */
+    public static boolean isReplicaRead() {
+        return TransactionSynchronizationManager.hasResource(REPLICA_READ);
+    }
+
+    // 커넥션을 가져오는 시점(첫 쿼리)은 결과를 읽기 전이기 때문에 여기서 CacheMode를 바꿔도 이번 조회부터 적용된다.
+    private static void markReplicaRead() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || isReplicaRead()) {
+            return;
+        }
+        TransactionSynchronizationManager.bindResource(REPLICA_READ, Boolean.TRUE);
+
+        List<Runnable> restores = new ArrayList<>();
+        for (Object resource : TransactionSynchronizationManager.getResourceMap().values()) {
+            if (resource instanceof EntityManagerHolder) {
+                Session session = ((EntityManagerHolder) resource).getEntityManager().unwrap(Session.class);
+                CacheMode previous = session.getCacheMode();
+                session.setCacheMode(CacheMode.GET);
+                restores.add(() -> session.setCacheMode(previous));
+            }
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_READ);
+                restores.forEach(Runnable::run);
+            }
+        });
+    }
+
+    private void writeHeartbeat() throws SQLException {
+        try (Connection connection = primary.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("create table if not exists replica_heartbeat (id int primary key, beat bigint not null)");
+            long now = System.currentTimeMillis();
+            if (statement.executeUpdate("update replica_heartbeat set beat = " + now + " where id = 1") == 0) {
+                statement.executeUpdate("insert into replica_heartbeat (id, beat) values (1, " + now + ")");
+            }
+        }
+    }
+
+    private static Map<String, Object> poolStats(HikariDataSource pool) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        HikariPoolMXBean mxBean = pool.getHikariPoolMXBean(); // 첫 커넥션을 가져오기 전에는 null
+        stats.put("active", mxBean == null ? 0 : mxBean.getActiveConnections());
+        stats.put("idle", mxBean == null ? 0 : mxBean.getIdleConnections());
+        stats.put("total", mxBean == null ? 0 : mxBean.getTotalConnections());
+        stats.put("waiting", mxBean == null ? 0 : mxBean.getThreadsAwaitingConnection());
+        stats.put("maximumPoolSize", pool.getMaximumPoolSize());
+        return stats;
+    }
+
+    private static class Replica {
+        private final HikariDataSource pool;
+        private final LongAdder routes = new LongAdder();
+        private volatile boolean available;
+        private volatile long lagMillis = -1;
+
+        private Replica(HikariDataSource pool) {
+            this.pool = pool;
+        }
+
+        private void check(long now, long maxLagMillis) {
+            try (Connection connection = pool.getConnection();
+                 PreparedStatement statement = connection.prepareStatement("select beat from replica_heartbeat where id = 1");
+                 ResultSet resultSet = statement.executeQuery()) {
+                lagMillis = resultSet.next() ? Math.max(0, now - resultSet.getLong(1)) : -1;
+            } catch (SQLException e) {
+                lagMillis = -1; // 복제가 시작되지 않았거나(테이블 없음) 접속 불가
+            }
+            boolean wasAvailable = available;
+            available = lagMillis >= 0 && lagMillis <= maxLagMillis;
+            if (wasAvailable != available) {
+                log.warn("replica {} {} (lag = {}ms)", pool.getPoolName(), available ? "사용" : "제외", lagMillis);
+            }
+        }
+    }
+
+    // 트랜잭션의 readOnly 여부에 따라 커넥션 풀을 선택한다.
+    private class RoutingDataSource extends AbstractDataSource {
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return route().getConnection();
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return route().getConnection(username, password);
+        }
+    }
+}
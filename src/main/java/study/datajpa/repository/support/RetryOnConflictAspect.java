@@ -0,0 +1,54 @@
+package study.datajpa.repository.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.core.MethodClassKey;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+import study.datajpa.repository.RetryOnConflict;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-29
+ * Time: 22:30
+ **/
+
+/**
+ * @RetryOnConflict 처리
+ * 리포지토리 프록시(트랜잭션 인터셉터) 바깥에서 감싸기 때문에 시도마다 트랜잭션이 새로 시작/커밋된다.
+ */
+@Aspect
+@Component
+public class RetryOnConflictAspect {
+
+    private final ConflictRetryExecutor retryExecutor;
+    private final Map<MethodClassKey, Optional<RetryOnConflict>> retryMethods = new ConcurrentHashMap<>();
+
+    public RetryOnConflictAspect(ConflictRetryExecutor retryExecutor) {
+        this.retryExecutor = retryExecutor;
+    }
+
+    @Around("target(study.datajpa.repository.MemberRepository) || target(study.datajpa.repository.TeamRepository)")
+    public Object retry(ProceedingJoinPoint joinPoint) throws Throwable {
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Class<?> targetClass = joinPoint.getTarget().getClass();
+        Optional<RetryOnConflict> retryOnConflict = retryMethods.computeIfAbsent(new MethodClassKey(method, targetClass),
+                key -> Optional.ofNullable(AnnotatedElementUtils.findMergedAnnotation(
+                        ClassUtils.getMostSpecificMethod(method, targetClass), RetryOnConflict.class)));
+        if (!retryOnConflict.isPresent()) {
+            return joinPoint.proceed();
+        }
+
+        RetryOnConflict retry = retryOnConflict.get();
+        return retryExecutor.execute(retry.maxAttempts(), retry.backoffMillis(), retry.maxBackoffMillis(), joinPoint::proceed);
+    }
+}
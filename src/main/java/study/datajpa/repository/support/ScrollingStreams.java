@@ -0,0 +1,54 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.query.Query;
+
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-16
+ * Time: 21:40
+ **/
+
+/**
+ * 전체 데이터를 List로 조회하면 결과를 모두 메모리에 올리기 때문에 데이터가 많아지면 OOM이 발생한다.
+ * FORWARD_ONLY 커서로 fetchSize 만큼씩 읽어오고, 엔티티는 소비된 직후 영속성 컨텍스트에서 분리(detach)한다.
+ *
+ * - 트랜잭션 안에서 사용해야 하고, 커서를 닫기 위해 반드시 try-with-resources로 close 해야한다.
+ * - 소비하는 쪽에서 sorted, collect 등으로 모아버리면 의미가 없다.
+ */
+public class ScrollingStreams {
+
+    public static <T> Stream<T> stream(Session session, Query<T> query, int fetchSize, boolean detach) {
+        ScrollableResults results = query
+                .setFetchSize(fetchSize)
+                .setReadOnly(true) // 스냅샷을 만들지 않는다.
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<T>(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean tryAdvance(Consumer<? super T> action) {
+                if (!results.next()) {
+                    return false;
+                }
+                T row = (T) results.get(0);
+                action.accept(row);
+                if (detach) {
+                    session.detach(row);
+                }
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(results::close);
+    }
+}
@@ -0,0 +1,129 @@
+package study.datajpa.repository.support;
+
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-26
+ * Time: 21:30
+ **/
+
+/**
+ * 조건의 모양(shape)과 바인딩 값을 분리한 Specification
+ * ex) username("m1").and(teamName("teamA")) -> shape: (username and teamName), values: [m1, teamA]
+ *
+ * 일반 Specification 처럼 사용할 수 있고, SpecificationCache는 shape 별로 파라메터를 사용한 CriteriaQuery를 한번만 만들어두고
+ * 값만 바인딩해서 재사용한다.
+ */
+public class ShapedSpecification<T> implements Specification<T> {
+
+    private final String shape;
+    private final List<Object> values;
+    private final Template<T> template;
+
+    private ShapedSpecification(String shape, List<Object> values, Template<T> template) {
+        this.shape = shape;
+        this.values = values;
+        this.template = template;
+    }
+
+    /**
+     * 값 하나를 사용하는 조건
+     * @param shape 조건 이름 (캐시 키로 사용하기 때문에 조건마다 고유해야 한다.)
+     */
+    public static <T> ShapedSpecification<T> of(String shape, Object value, Condition<T> condition) {
+        return new ShapedSpecification<>(shape, Collections.singletonList(value),
+                (root, query, cb, values) -> condition.create(root, cb, values.next()));
+    }
+
+    // 바인딩 값이 없는 조건 (ex. is null)
+    public static <T> ShapedSpecification<T> fixed(String shape, Specification<T> spec) {
+        return new ShapedSpecification<>(shape, Collections.emptyList(), (root, query, cb, values) -> spec.toPredicate(root, query, cb));
+    }
+
+    // 조건 없음 (where 절에 포함되지 않는다)
+    public static <T> ShapedSpecification<T> none() {
+        return new ShapedSpecification<>("none", Collections.emptyList(), (root, query, cb, values) -> null);
+    }
+
+    public String getShape() {
+        return shape;
+    }
+
+    public List<Object> getValues() {
+        return values;
+    }
+
+    @Override
+    public Specification<T> and(Specification<T> other) {
+        if (!(other instanceof ShapedSpecification)) {
+            return Specification.super.and(other);
+        }
+        return combine((ShapedSpecification<T>) other, "and");
+    }
+
+    @Override
+    public Specification<T> or(Specification<T> other) {
+        if (!(other instanceof ShapedSpecification)) {
+            return Specification.super.or(other);
+        }
+        return combine((ShapedSpecification<T>) other, "or");
+    }
+
+    // 일반 Specification 으로 사용할 때는 값을 리터럴로 사용한다.
+    @Override
+    public Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
+        List<Expression<?>> literals = new ArrayList<>();
+        for (Object value : values) {
+            literals.add(value == null ? criteriaBuilder.nullLiteral(Object.class) : criteriaBuilder.literal(value));
+        }
+        return template.create(root, query, criteriaBuilder, literals.iterator());
+    }
+
+    // 값 대신 파라메터(ParameterExpression)를 사용해서 조건을 만든다.
+    Predicate toPredicate(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder, List<? extends Expression<?>> parameters) {
+        return template.create(root, query, criteriaBuilder, parameters.iterator());
+    }
+
+    private ShapedSpecification<T> combine(ShapedSpecification<T> other, String operator) {
+        List<Object> combinedValues = new ArrayList<>(values);
+        combinedValues.addAll(other.values);
+
+        Template<T> left = template;
+        Template<T> right = other.template;
+        return new ShapedSpecification<>("(" + shape + " " + operator + " " + other.shape + ")", combinedValues,
+                (root, query, cb, parameters) -> {
+                    Predicate leftPredicate = left.create(root, query, cb, parameters);
+                    Predicate rightPredicate = right.create(root, query, cb, parameters);
+                    if (leftPredicate == null) {
+                        return rightPredicate;
+                    }
+                    if (rightPredicate == null) {
+                        return leftPredicate;
+                    }
+                    return "and".equals(operator) ? cb.and(leftPredicate, rightPredicate) : cb.or(leftPredicate, rightPredicate);
+                });
+    }
+
+    @FunctionalInterface
+    public interface Condition<T> {
+        Predicate create(Root<T> root, CriteriaBuilder criteriaBuilder, Expression<?> value);
+    }
+
+    @FunctionalInterface
+    interface Template<T> {
+        // 값(리터럴 또는 파라메터)은 조건이 나타나는 순서대로 꺼내서 사용한다.
+        Predicate create(Root<T> root, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder, Iterator<? extends Expression<?>> values);
+    }
+}
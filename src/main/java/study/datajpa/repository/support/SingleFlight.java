@@ -0,0 +1,116 @@
+package study.datajpa.repository.support;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.UnaryOperator;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-28
+ * Time: 20:30
+ **/
+
+/**
+ * 같은 키로 동시에 들어온 호출을 하나로 합친다. (single flight)
+ * 처음 들어온 호출(leader)만 실행하고, 실행 중에 들어온 호출은 leader의 결과(또는 예외)를 같이 받는다.
+ * 실행이 끝나면 키를 제거하기 때문에 결과를 캐시하지는 않는다.
+ *
+ * ConcurrentHashMap.putIfAbsent 만 사용하기 때문에 키가 다른 호출끼리는 서로 대기하지 않는다.
+ */
+public class SingleFlight {
+
+    private final ConcurrentMap<Object, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public <T> T execute(Object key, Call<T> call) throws Throwable {
+        return execute(key, call, UnaryOperator.identity());
+    }
+
+    /**
+     * share: leader의 결과를 대기하던 호출에게 넘길때 적용한다. (ex. 호출마다 복사본을 반환)
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(Object key, Call<T> call, UnaryOperator<T> share) throws Throwable {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            try {
+                return share.apply((T) leader.get());
+            } catch (ExecutionException e) {
+                throw e.getCause();
+            }
+        }
+
+        executed.increment();
+        try {
+            T result = call.call();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * CompletableFuture를 반환하는 호출 (ex. @Async 리포지토리 메서드)
+     * future가 완료될 때까지 같은 키의 호출은 대기하지 않고 leader의 future를 공유한다.
+     */
+    public <T> CompletableFuture<T> executeAsync(Object key, Call<CompletableFuture<T>> call) throws Throwable {
+        return executeAsync(key, call, UnaryOperator.identity());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> executeAsync(Object key, Call<CompletableFuture<T>> call, UnaryOperator<T> share) throws Throwable {
+        CompletableFuture<Object> flight = new CompletableFuture<>();
+        CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            return leader.thenApply(result -> share.apply((T) result)); // 호출한 쪽에서 complete 하지 못하도록 새 future를 반환
+        }
+
+        executed.increment();
+        CompletableFuture<T> result;
+        try {
+            result = call.call();
+        } catch (Throwable e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+        result.whenComplete((value, e) -> {
+            inFlight.remove(key, flight);
+            if (e != null) {
+                flight.completeExceptionally(e);
+            } else {
+                flight.complete(value);
+            }
+        });
+        return result;
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @FunctionalInterface
+    public interface Call<T> {
+        T call() throws Throwable;
+    }
+}
@@ -0,0 +1,70 @@
+package study.datajpa.repository.support;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ReflectionUtils;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-28
+ * Time: 20:55
+ **/
+
+/**
+ * 자주 조회되는 id/username 단건 조회를 SingleFlight로 합친다.
+ * - 트랜잭션 안에서는 합치지 않는다. (각자 자기 영속성 컨텍스트, 락 범위에서 조회해야 한다)
+ * - 트랜잭션 밖에서 조회한 엔티티는 준영속 상태이지만 호출한 쪽에서 수정할 수 있기 때문에
+ *   leader를 기다린 호출에게는 엔티티의 얕은 복사본을 반환한다. (연관관계 프록시는 공유)
+ */
+@Aspect
+@Component
+public class SingleFlightAspect {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+
+    @SuppressWarnings("unchecked")
+    @Around("target(study.datajpa.repository.MemberRepository) && (execution(* findById(..))" +
+            " || execution(* findByIdAsync(..)) || execution(* findOneByUsername(..)))")
+    public Object coalesce(ProceedingJoinPoint joinPoint) throws Throwable {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        List<Object> key = Arrays.asList(joinPoint.getSignature().getName(), Arrays.asList(joinPoint.getArgs()));
+        if (CompletableFuture.class.isAssignableFrom(((MethodSignature) joinPoint.getSignature()).getReturnType())) {
+            return singleFlight.executeAsync(key, () -> (CompletableFuture<Object>) joinPoint.proceed(), SingleFlightAspect::copy);
+        }
+        return singleFlight.execute(key, joinPoint::proceed, SingleFlightAspect::copy);
+    }
+
+    public SingleFlight getSingleFlight() {
+        return singleFlight;
+    }
+
+    private static Object copy(Object result) {
+        if (result == null) {
+            return null;
+        }
+        if (result instanceof Optional) {
+            return ((Optional<?>) result).map(SingleFlightAspect::copyEntity);
+        }
+        return copyEntity(result);
+    }
+
+    private static Object copyEntity(Object entity) {
+        Object copy = BeanUtils.instantiateClass(entity.getClass());
+        ReflectionUtils.shallowCopyFieldState(entity, copy);
+        return copy;
+    }
+}
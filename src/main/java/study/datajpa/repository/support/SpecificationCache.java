@@ -0,0 +1,140 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.query.Query;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Parameter;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-26
+ * Time: 22:05
+ **/
+
+/**
+ * ShapedSpecification의 shape 별로 CriteriaQuery를 한번만 만들고, Hibernate가 변환한 JPQL을 재사용한다.
+ * - 조건 값은 ParameterExpression으로 만들기 때문에 shape가 같다면 JPQL도 같고,
+ *   Hibernate의 QueryPlanCache(JPQL -> SQL 변환 결과)도 그대로 재사용된다.
+ * - CriteriaQuery는 변경 가능한 객체이고 em.createQuery(CriteriaQuery)는 호출마다 JPQL을 다시 만들기 때문에
+ *   CriteriaQuery가 아니라 JPQL 문자열과 파라메터 이름만 캐시한다.
+ * - 조건의 리터럴(ex. like의 escape 문자)은 Hibernate가 파라메터로 바꾸기 때문에(literal_handling_mode) 그 값도 같이 캐시한다.
+ * - shape 별 hit 수, 컴파일 시간을 기록한다.
+ */
+@Component
+public class SpecificationCache {
+
+    private static final int MAX_SHAPES = 1000; // 조합이 너무 많아지면 더이상 캐시하지 않는다.
+
+    private final EntityManager em;
+    private final Map<String, CompiledQuery> cache = new ConcurrentHashMap<>();
+
+    public SpecificationCache(EntityManager em) {
+        this.em = em;
+    }
+
+    public <T> TypedQuery<T> createQuery(Class<T> domainClass, ShapedSpecification<T> spec) {
+        String key = domainClass.getName() + ":" + spec.getShape();
+        CompiledQuery compiled = cache.get(key);
+        if (compiled != null) {
+            compiled.hits.increment();
+            TypedQuery<T> query = em.createQuery(compiled.jpql, domainClass);
+            compiled.literals.forEach(query::setParameter);
+            List<Object> values = spec.getValues();
+            for (int i = 0; i < values.size(); i++) {
+                query.setParameter(compiled.parameterNames.get(i), values.get(i));
+            }
+            return query;
+        }
+
+        long start = System.nanoTime();
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaQuery<T> criteria = cb.createQuery(domainClass);
+        Root<T> root = criteria.from(domainClass);
+
+        List<Object> values = spec.getValues();
+        List<ParameterExpression<Object>> parameters = new ArrayList<>();
+        List<String> parameterNames = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            parameters.add(cb.parameter(parameterType(values.get(i)), "p" + i));
+            parameterNames.add("p" + i);
+        }
+        Predicate predicate = spec.toPredicate(root, criteria, cb, parameters);
+        if (predicate != null) {
+            criteria.where(predicate);
+        }
+        TypedQuery<T> query = em.createQuery(criteria.select(root));
+
+        if (cache.size() < MAX_SHAPES) {
+            Map<String, Object> literals = literals(query, parameterNames);
+            if (literals != null) {
+                String jpql = query.unwrap(Query.class).getQueryString();
+                cache.putIfAbsent(key, new CompiledQuery(jpql, parameterNames, literals, System.nanoTime() - start));
+            }
+        }
+        for (int i = 0; i < values.size(); i++) {
+            query.setParameter(parameters.get(i), values.get(i));
+        }
+        return query;
+    }
+
+    public Map<String, Map<String, Object>> snapshot() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        cache.forEach((shape, compiled) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("hits", compiled.hits.sum());
+            stats.put("compileMicros", compiled.compileNanos / 1_000);
+            result.put(shape, stats);
+        });
+        return result;
+    }
+
+    // 리터럴이 바뀐 파라메터와 바인딩된 값, 이름이 없는 파라메터가 있으면 null (캐시하지 않음)
+    private static Map<String, Object> literals(TypedQuery<?> query, List<String> parameterNames) {
+        Map<String, Object> literals = new HashMap<>();
+        for (Parameter<?> parameter : query.getParameters()) {
+            if (parameter.getName() == null) {
+                return null;
+            }
+            if (!parameterNames.contains(parameter.getName())) {
+                literals.put(parameter.getName(), query.getParameterValue(parameter));
+            }
+        }
+        return literals;
+    }
+
+    // null 값은 타입을 알수 없기 때문에 Object로 만들고 Hibernate가 비교 대상 속성으로 타입을 추론한다.
+    @SuppressWarnings("unchecked")
+    private static Class<Object> parameterType(Object value) {
+        return value == null ? Object.class : (Class<Object>) value.getClass();
+    }
+
+    private static class CompiledQuery {
+        private final String jpql;
+        private final List<String> parameterNames;
+        private final Map<String, Object> literals;
+        private final long compileNanos;
+        private final LongAdder hits = new LongAdder();
+
+        private CompiledQuery(String jpql, List<String> parameterNames, Map<String, Object> literals, long compileNanos) {
+            this.jpql = jpql;
+            this.parameterNames = parameterNames;
+            this.literals = literals;
+            this.compileNanos = compileNanos;
+        }
+    }
+}
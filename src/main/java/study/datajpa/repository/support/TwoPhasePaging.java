@@ -0,0 +1,68 @@
+package study.datajpa.repository.support;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.TypedQuery;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-04-03
+ * Time: 20:10
+ **/
+
+/**
+ * 컬렉션(OneToMany) fetch join 페이징
+ * 컬렉션을 fetch join 하면서 setFirstResult/setMaxResults를 사용하면 Hibernate가 전체 row를 조회한 뒤 메모리에서 페이징한다. (HHH000104)
+ * 지연로딩으로 조회하면 컬렉션 마다 쿼리가 나간다. (N + 1, batch fetch size로 완화)
+ *
+ * 1단계: 루트 엔티티의 id만 DB에서 페이징 (PK 인덱스, row 수 = pageSize)
+ * 2단계: id in (...) 으로 루트 + 컬렉션을 fetch join 한번으로 조회하고, 1단계의 id 순서대로 정렬
+ */
+public class TwoPhasePaging {
+
+    /**
+     * @param idJpql    루트 id만 조회하는 JPQL (ex. select t.id from Team t), pageable의 Sort는 alias 기준으로 추가한다.
+     * @param alias     idJpql의 루트 alias
+     * @param fetchJpql :ids 파라메터로 루트와 컬렉션을 조회하는 JPQL (ex. select distinct t from Team t left join fetch t.members where t.id in :ids)
+     */
+    public static <T> List<T> findContent(EntityManager em, Class<T> type, String idJpql, String alias, String fetchJpql, Pageable pageable) {
+        TypedQuery<Object> idQuery = em.createQuery(QueryUtils.applySorting(idJpql, pageable.getSort(), alias), Object.class);
+        if (pageable.isPaged()) { // Pageable.unpaged()는 offset, pageSize를 지원하지 않는다. (UnsupportedOperationException)
+            idQuery.setFirstResult((int) pageable.getOffset())
+                    .setMaxResults(pageable.getPageSize());
+        }
+        List<Object> ids = idQuery.getResultList();
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<T> fetched = em.createQuery(fetchJpql, type)
+                .setParameter("ids", ids)
+                .setHint("hibernate.query.passDistinctThrough", false) // distinct는 엔티티 중복 제거에만 사용 (SQL에 distinct를 붙이지 않는다)
+                .getResultList();
+
+        // in (...) 조회 결과는 순서가 없기 때문에 1단계의 순서로 다시 정렬
+        PersistenceUnitUtil persistenceUnitUtil = em.getEntityManagerFactory().getPersistenceUnitUtil();
+        Map<Object, T> byId = new HashMap<>();
+        for (T entity : fetched) {
+            byId.put(persistenceUnitUtil.getIdentifier(entity), entity);
+        }
+        List<T> content = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            T entity = byId.get(id);
+            if (entity != null) { // 1단계와 2단계 사이에 삭제된 경우
+                content.add(entity);
+            }
+        }
+        return content;
+    }
+}
@@ -0,0 +1,52 @@
+package study.datajpa.repository.support;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Created by IntelliJ IDEA.
+ * User: june
+ * Date: 2020-03-31
+ * Time: 19:40
+ **/
+
+/**
+ * ULID 형식의 시간순 ID (26자, Crockford base32)
+ * - 앞 48bit: 현재 시간(ms), 뒤 80bit: 랜덤 -> 문자열 정렬 순서 = 생성 시간 순서
+ * - 새 ID는 항상 인덱스의 오른쪽 끝에 추가되기 때문에 랜덤 UUID와 달리 중간 페이지 분할이 생기지 않는다.
+ * - DB(시퀀스, 채번 테이블) 조회, 락 없이 애플리케이션에서 바로 생성한다. (ThreadLocalRandom)
+ *
+ * 같은 ms 안에서 생성한 ID끼리는 순서를 보장하지 않는다.
+ */
+public final class UlidGenerator {
+
+    public static final int LENGTH = 26;
+
+    private static final char[] ENCODING = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private UlidGenerator() {
+    }
+
+    public static String next() {
+        return next(System.currentTimeMillis());
+    }
+
+    static String next(long timestamp) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long randomHigh = random.nextLong() & 0xFFFFL;   // 16bit
+        long randomLow = random.nextLong();              // 64bit
+
+        char[] chars = new char[LENGTH];
+        // 시간 48bit -> 10자 (상위 2bit는 0)
+        for (int i = 9; i >= 0; i--) {
+            chars[i] = ENCODING[(int) (timestamp & 0x1F)];
+            timestamp >>>= 5;
+        }
+        // 랜덤 80bit -> 16자
+        for (int i = 25; i >= 10; i--) {
+            chars[i] = ENCODING[(int) (randomLow & 0x1F)];
+            randomLow = (randomLow >>> 5) | (randomHigh << 59);
+            randomHigh >>>= 5;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,105 @@
+package study.datajpa.controller;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 동기(/members2/{id}) vs 비동기(/members/{id}) 처리량 비교
+ * 톰캣 스레드를 4개로 줄이고, 쿼리마다 20ms 지연을 넣어서 DB가 느린 상황을 만든다.
+ * - 동기: 톰캣 스레드 수(4)만큼만 동시에 조회
+ * - 비동기: DB 스레드풀(커넥션 풀 크기 10)만큼 동시에 조회
+ * ./gradlew largeTest 로 실행
+ */
+@Tag("large")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "server.tomcat.max-threads=4",
+        "datajpa.cache.enabled=false" // 2차 캐시를 사용하면 findById가 DB까지 가지 않는다.
+})
+class MemberControllerLoadTest {
+
+    static final int CLIENTS = 32;
+    static final int REQUESTS = 400;
+    static final long QUERY_LATENCY_MILLIS = 20;
+
+    static volatile boolean latencyEnabled;
+
+    @Autowired TestRestTemplate restTemplate;
+
+    @Test
+    public void asyncThroughput() throws Exception {
+        // given
+        latencyEnabled = true;
+
+        // when
+        double syncRps;
+        double asyncRps;
+        try {
+            syncRps = requestsPerSecond("/members2/1");
+            asyncRps = requestsPerSecond("/members/1");
+        } finally {
+            latencyEnabled = false;
+        }
+
+        // then
+        System.out.println("sync rps = " + syncRps + ", async rps = " + asyncRps);
+        assertThat(asyncRps).isGreaterThan(syncRps);
+    }
+
+    private double requestsPerSecond(String url) throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        try {
+            List<Future<ResponseEntity<String>>> responses = new ArrayList<>();
+            long start = System.nanoTime();
+            for (int i = 0; i < REQUESTS; i++) {
+                responses.add(clients.submit(() -> restTemplate.getForEntity(url, String.class)));
+            }
+            for (Future<ResponseEntity<String>> response : responses) {
+                assertThat(response.get(30, TimeUnit.SECONDS).getStatusCode()).isEqualTo(HttpStatus.OK);
+            }
+            long elapsedNanos = System.nanoTime() - start;
+            return REQUESTS * 1_000_000_000.0 / elapsedNanos;
+        } finally {
+            clients.shutdownNow();
+        }
+    }
+
+    @TestConfiguration
+    static class LatencyConfig {
+
+        // 쿼리 실행 전에 지연을 넣는다. (p6spy JdbcEventListener)
+        @Bean
+        public JdbcEventListener latencyInjector() {
+            return new JdbcEventListener() {
+                @Override
+                public void onBeforeAnyExecute(StatementInformation statementInformation) {
+                    if (!latencyEnabled) {
+                        return;
+                    }
+                    try {
+                        Thread.sleep(QUERY_LATENCY_MILLIS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package study.datajpa.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.monitor.ConnectionHoldMetrics;
+import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.TeamRepository;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * OSIV를 끈 상태(spring.jpa.open-in-view: false)에서 fetch plan, 지연로딩 감지, 커넥션 점유 시간 집계 확인
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired TestRestTemplate restTemplate;
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+    @Autowired TeamRepository teamRepository;
+    @Autowired ConnectionHoldMetrics connectionHoldMetrics;
+
+    @Test
+    public void detailWithFetchPlan() {
+        // given
+        Team team = teamRepository.save(new Team("osivTeam"));
+        Member member = memberRepository.save(new Member("osivMember", 10, team));
+
+        // when
+        ResponseEntity<Map> response = restTemplate.getForEntity("/members/{id}/detail", Map.class, member.getId());
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(response.getBody().get("teamName")).isEqualTo("osivTeam");
+
+        Map<String, Object> detail = connectionHoldMetrics.snapshot().get("GET /members/{id}/detail");
+        assertThat((Long) detail.get("connections")).isGreaterThanOrEqualTo(1L); // repositoryExecutor 스레드에서 가져온 커넥션도 집계
+        assertThat(detail.get("lazyLoadingOutsideTransaction")).isEqualTo(0L);
+    }
+
+    @Test
+    public void lazyLoadingOutsideTransaction() {
+        // given
+        Team team = teamRepository.save(new Team("osivLazyTeam"));
+        Member member = memberRepository.save(new Member("osivLazyMember", 10, team));
+
+        // when
+        ResponseEntity<String> response = restTemplate.getForEntity("/test/lazy/{id}", String.class, member.getId());
+
+        // then
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.INTERNAL_SERVER_ERROR);
+        assertThat(connectionHoldMetrics.snapshot().get("GET /test/lazy/{id}").get("lazyLoadingOutsideTransaction")).isEqualTo(1L);
+    }
+
+    @Test
+    public void keysetSizeValidation() {
+        // when
+        ResponseEntity<String> zero = restTemplate.getForEntity("/members/keyset?size=0", String.class);
+        ResponseEntity<String> tooLarge = restTemplate.getForEntity("/members/keyset?size=" + (MemberController.MAX_KEYSET_SIZE + 1), String.class);
+        ResponseEntity<String> max = restTemplate.getForEntity("/members/keyset?size=" + MemberController.MAX_KEYSET_SIZE, String.class);
+
+        // then
+        assertThat(zero.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(tooLarge.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(max.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    public void keysetInvalidCursor() throws Exception {
+        // 비동기 처리를 시작하기 전에 400으로 응답한다.
+        mockMvc.perform(get("/members/keyset").param("cursor", "not-a-cursor!"))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void invalidSortProperty() {
+        // when
+        ResponseEntity<String> invalid = restTemplate.getForEntity("/members?sort=age", String.class);
+        ResponseEntity<String> valid = restTemplate.getForEntity("/members?sort=username,desc", String.class);
+
+        // then
+        assertThat(invalid.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        assertThat(valid.getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @TestConfiguration
+    static class LazyControllerConfig {
+
+        @Bean
+        public LazyController lazyController(MemberRepository memberRepository) {
+            return new LazyController(memberRepository);
+        }
+    }
+
+    // fetch plan 없이 트랜잭션 밖에서 team에 접근하는 API
+    // @RestController를 붙이면 컴포넌트 스캔으로 다른 테스트에도 등록되기 때문에 @Bean으로만 등록한다.
+    @RequestMapping("/test")
+    @ResponseBody
+    static class LazyController {
+
+        private final MemberRepository memberRepository;
+
+        LazyController(MemberRepository memberRepository) {
+            this.memberRepository = memberRepository;
+        }
+
+        @GetMapping("/lazy/{id}")
+        public String teamName(@PathVariable Long id) {
+            return memberRepository.findById(id).get().getTeam().getName();
+        }
+    }
+}
@@ -6,11 +6,14 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.repository.MemberRepository;
+import study.datajpa.repository.support.AuditStampProvider;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import java.util.List;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
 @SpringBootTest
 @Transactional
 @Rollback(false)
@@ -22,6 +25,9 @@ class MemberTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    AuditStampProvider auditStampProvider;
+
     @Test
     public void testEntity() {
         Team teamA = new Team("teamA");
@@ -72,4 +78,24 @@ class MemberTest {
         System.out.println("findMember = " + findMember.getCreatedDate());
         System.out.println("findMember = " + findMember.getLastModifiedDate());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void batchedAuditing() throws Exception {
+        // given
+        long resolvedBefore = auditStampProvider.getResolved();
+
+        // when
+        Member member1 = memberRepository.save(new Member("audit1"));
+        Thread.sleep(10);
+        Member member2 = memberRepository.save(new Member("audit2"));
+        member1.setAge(20);
+        em.flush(); // @PreUpdate 발생
+
+        // then
+        // 같은 트랜잭션에서는 작성자, 시간을 한번만 구한다.
+        assertThat(auditStampProvider.getResolved() - resolvedBefore).isEqualTo(1);
+        assertThat(member1.getCreatedBy()).isNotNull().isEqualTo(member2.getCreatedBy());
+        assertThat(member1.getCreatedDate()).isNotNull().isEqualTo(member2.getCreatedDate());
+        assertThat(member1.getLastModifiedDate()).isEqualTo(member1.getCreatedDate());
+    }
+}
@@ -0,0 +1,34 @@
+package study.datajpa.monitor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LatencyHistogramTest {
+
+    @Test
+    public void bucketBoundary() {
+        // 모든 값은 자신이 속한 버킷의 상한값 이하여야 한다.
+        for (long value = 0; value < 100_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertThat(LatencyHistogram.upperBoundOf(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(LatencyHistogram.upperBoundOf(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void percentile() {
+        // given
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 1000);
+        }
+
+        // then
+        // 버킷 오차(12.5%) 이내
+        assertThat(histogram.percentile(50)).isBetween(50_000L, 56_250L);
+        assertThat(histogram.percentile(99)).isBetween(99_000L, 111_375L);
+    }
+}
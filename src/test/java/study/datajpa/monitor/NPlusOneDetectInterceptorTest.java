@@ -0,0 +1,112 @@
+package study.datajpa.monitor;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.ResponseBody;
+import study.datajpa.AsyncConfig;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 비동기 요청(CompletableFuture)도 repositoryExecutor 스레드에서 실행된 쿼리까지 요청 단위로 집계한다.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+class NPlusOneDetectInterceptorTest {
+
+    static final int MEMBERS = 6; // datajpa.n-plus-one.threshold(5) 이상
+
+    @Autowired MockMvc mockMvc;
+    @Autowired MemberRepository memberRepository;
+
+    List<Member> members = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(memberRepository.save(new Member("nPlusOne" + i, 10)));
+        }
+    }
+
+    @AfterEach
+    public void after() {
+        memberRepository.deleteAll(members);
+    }
+
+    @Test
+    public void detectOnAsyncRequest() throws Exception {
+        // when
+        MvcResult result = mockMvc.perform(get("/test/n-plus-one"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // 처음 dispatch가 끝나면 요청 스레드에 Scope가 남아있지 않다.
+        assertThat(QueryCounter.current()).isNull();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk());
+
+        // then
+        QueryCounter.Scope scope = (QueryCounter.Scope) result.getRequest().getAttribute(NPlusOneDetectInterceptor.SCOPE_ATTRIBUTE);
+        assertThat(scope.getTotal()).isGreaterThanOrEqualTo(MEMBERS);
+        assertThat(scope.findRepeated(MEMBERS)).hasSize(1);
+        assertThat(QueryCounter.current()).isNull();
+    }
+
+    @TestConfiguration
+    static class NPlusOneControllerConfig {
+
+        @Bean
+        public NPlusOneController nPlusOneController(MemberRepository memberRepository,
+                                                     @Qualifier(AsyncConfig.REPOSITORY_EXECUTOR) AsyncTaskExecutor repositoryExecutor) {
+            return new NPlusOneController(memberRepository, repositoryExecutor);
+        }
+    }
+
+    // 회원마다 같은 쿼리를 실행하는 비동기 API
+    // @RestController를 붙이면 컴포넌트 스캔으로 다른 테스트에도 등록되기 때문에 @Bean으로만 등록한다.
+    @RequestMapping("/test")
+    @ResponseBody
+    static class NPlusOneController {
+
+        private final MemberRepository memberRepository;
+        private final AsyncTaskExecutor repositoryExecutor;
+
+        NPlusOneController(MemberRepository memberRepository, AsyncTaskExecutor repositoryExecutor) {
+            this.memberRepository = memberRepository;
+            this.repositoryExecutor = repositoryExecutor;
+        }
+
+        @GetMapping("/n-plus-one")
+        public CompletableFuture<Integer> nPlusOne() {
+            return CompletableFuture.supplyAsync(() -> {
+                int found = 0;
+                for (int i = 0; i < MEMBERS; i++) {
+                    found += memberRepository.findOptionalByUsername("nPlusOne" + i).isPresent() ? 1 : 0;
+                }
+                return found;
+            }, repositoryExecutor);
+        }
+    }
+}
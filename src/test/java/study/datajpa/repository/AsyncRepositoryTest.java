@@ -0,0 +1,62 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.entity.Member;
+import study.datajpa.monitor.QueryCounter;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 비동기 조회는 repositoryExecutor 스레드에서 트랜잭션 밖으로 실행되기 때문에 트랜잭션 없이 테스트한다.
+ */
+@SpringBootTest
+class AsyncRepositoryTest {
+
+    @Autowired MemberRepository memberRepository;
+
+    Member member;
+
+    @BeforeEach
+    public void before() {
+        member = memberRepository.save(new Member("asyncMember", 10));
+    }
+
+    @AfterEach
+    public void after() {
+        memberRepository.deleteById(member.getId());
+    }
+
+    @Test
+    public void findByIdAsyncUsesSecondLevelCache() throws Exception {
+        // given
+        memberRepository.findByIdAsync(member.getId()).get(); // 2차 캐시에 올린다.
+
+        // when
+        QueryCounter.start();
+        Member found = memberRepository.findByIdAsync(member.getId()).get();
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        // then
+        assertThat(found.getUsername()).isEqualTo("asyncMember");
+        assertThat(scope.getTotal()).isEqualTo(0);
+    }
+
+    @Test
+    public void queryCounterPropagatesToAsyncThread() throws Exception {
+        // when
+        QueryCounter.start();
+        List<Member> result = memberRepository.findByUsernameAsync("asyncMember").get();
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        // then
+        // 쿼리는 repositoryExecutor 스레드에서 실행되지만 호출한 스레드의 Scope에 집계된다.
+        assertThat(result).extracting("username").containsExactly("asyncMember");
+        assertThat(scope.getTotal()).isGreaterThanOrEqualTo(1);
+    }
+}
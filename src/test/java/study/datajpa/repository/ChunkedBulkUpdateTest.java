@@ -0,0 +1,84 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.support.BulkUpdateResult;
+import study.datajpa.repository.support.ChunkedBulkUpdater;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// 청크마다 커밋하기 때문에 @Transactional을 사용하지 않는다.
+@SpringBootTest
+class ChunkedBulkUpdateTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired ChunkedBulkUpdater chunkedBulkUpdater;
+
+    @Test
+    public void chunkedUpdate() {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            members.add(new Member("chunk" + i, i));
+        }
+        memberRepository.saveAll(members);
+
+        // when
+        AtomicInteger progressCalls = new AtomicInteger();
+        BulkUpdateResult result = chunkedBulkUpdater.execute(Member.class,
+                "update Member m set m.age = m.age + 100 where m.username like 'chunk%' and m.age >= :age",
+                Collections.singletonMap("age", 20), 5,
+                (completed, total, updatedRows) -> progressCalls.incrementAndGet());
+
+        // then
+        assertThat(result.getUpdatedRows()).isEqualTo(10);
+        assertThat(progressCalls.get()).isEqualTo(result.getChunks());
+        assertThat(memberRepository.findById(members.get(25).getId()).get().getAge()).isEqualTo(125);
+        assertThat(memberRepository.findById(members.get(5).getId()).get().getAge()).isEqualTo(5);
+    }
+
+    @Test
+    public void orPredicate() {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            members.add(new Member("chunkOr" + i, 50));
+        }
+        memberRepository.saveAll(members);
+
+        // when
+        // 원래 조건을 괄호로 감싸지 않으면 앞의 조건에 해당하는 row가 청크마다 update 된다.
+        BulkUpdateResult result = chunkedBulkUpdater.execute(Member.class,
+                "update Member m set m.age = m.age + 1 where m.username = 'chunkOr0' or m.username = 'chunkOr1'",
+                Collections.emptyMap(), 3, (completed, total, updatedRows) -> { });
+
+        // then
+        assertThat(result.getUpdatedRows()).isEqualTo(2);
+        assertThat(memberRepository.findById(members.get(0).getId()).get().getAge()).isEqualTo(51);
+    }
+
+    @Test
+    public void invalidChunkSize() {
+        assertThatThrownBy(() -> chunkedBulkUpdater.execute(Member.class, "update Member m set m.age = 1",
+                Collections.emptyMap(), 0, (completed, total, updatedRows) -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> chunkedBulkUpdater.execute(Member.class, "update Member m set m.age = 1",
+                Collections.emptyMap(), -1, (completed, total, updatedRows) -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void jpqlWithoutAlias() {
+        assertThatThrownBy(() -> chunkedBulkUpdater.execute(Member.class, "update Member set age = 1",
+                Collections.emptyMap(), 100, (completed, total, updatedRows) -> { }))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
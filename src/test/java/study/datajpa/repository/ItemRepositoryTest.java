@@ -4,9 +4,12 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import study.datajpa.entity.Item;
+import study.datajpa.monitor.QueryCounter;
+import study.datajpa.repository.support.UlidGenerator;
 
 import java.time.LocalDateTime;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -26,4 +29,32 @@ class ItemRepositoryTest {
         // -> DB에 있다고 가정한다. (select 쿼리가 먼저 나간다)
         // 비효율적임. (select 쿼리가 1번 더 나감)
     }
-}
\ No newline at end of file
+
+    @Test
+    public void saveAssignedId() {
+        // given
+        Item item = new Item(UlidGenerator.next(), LocalDateTime.now()); // ID, 생성일을 지정
+
+        // when
+        QueryCounter.start();
+        itemRepository.save(item);
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        // then
+        assertThat(scope.getTotal()).isEqualTo(1); // select 없이 insert만
+        assertFalse(item.isNew());
+        assertThat(itemRepository.findById(item.getId())).isPresent();
+    }
+
+    @Test
+    public void timeOrderedId() throws Exception {
+        // given
+        Item first = new Item(LocalDateTime.now());
+        Thread.sleep(2);
+        Item second = new Item(LocalDateTime.now());
+
+        // then
+        assertThat(first.getId()).hasSize(UlidGenerator.LENGTH);
+        assertThat(second.getId().compareTo(first.getId())).isPositive(); // 생성 순서 = 문자열 정렬 순서
+    }
+}
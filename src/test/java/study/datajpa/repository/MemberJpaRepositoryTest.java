@@ -120,6 +120,24 @@ class MemberJpaRepositoryTest {
         assertThat(totalCount).isEqualTo(7);
     }
 
+    @Test
+    public void keysetPaging() {
+        // given
+        memberJpaRepository.save(new Member("member1", 12));
+        memberJpaRepository.save(new Member("member2", 12));
+        memberJpaRepository.save(new Member("member3", 12));
+
+        // when
+        Window<Member> first = memberJpaRepository.findByKeyset(12, null, 2);
+        Window<Member> second = memberJpaRepository.findByKeyset(12, first.getNextCursor(), 2);
+
+        // then
+        assertThat(first.getContent().size()).isEqualTo(2);
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(second.getContent().size()).isEqualTo(1);
+        assertThat(second.isHasNext()).isFalse();
+    }
+
     @Test
     public void bulkUpdate() {
         // given
@@ -1,24 +1,33 @@
 package study.datajpa.repository;
 
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.*;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.annotation.Rollback;
 import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import study.datajpa.dto.MemberDto;
 import study.datajpa.entity.Member;
 import study.datajpa.entity.Team;
+import study.datajpa.repository.support.SpecificationCache;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.JoinType;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -27,6 +36,7 @@ class MemberRepositoryTest {
 
     @Autowired MemberRepository memberRepository;
     @Autowired TeamRepository teamRepository;
+    @Autowired SpecificationCache specificationCache;
     @PersistenceContext EntityManager em;
 
     @Test
@@ -248,6 +258,130 @@ class MemberRepositoryTest {
         Page<MemberDto> toDto = page.map(member -> new MemberDto(member.getId(), member.getUsername(), null));
     }
 
+    @Test
+    public void pagingUnpaged() {
+        // given
+        memberRepository.save(new Member("unpaged1", 77));
+        memberRepository.save(new Member("unpaged2", 77));
+
+        // when
+        Page<Member> byAge = memberRepository.findByAge(77, Pageable.unpaged());
+        Page<Member> all = memberRepository.findAll(Pageable.unpaged());
+
+        // then
+        // 전체를 조회하고 count 쿼리는 실행하지 않는다.
+        assertThat(byAge.getContent()).extracting("username").containsExactlyInAnyOrder("unpaged1", "unpaged2");
+        assertThat(byAge.getTotalElements()).isEqualTo(2);
+        assertThat(all.getContent()).extracting("username").contains("unpaged1", "unpaged2");
+        assertThat(all.getTotalElements()).isEqualTo(all.getContent().size());
+    }
+
+    @Test
+    public void projectionPagingUnpaged() {
+        // given
+        memberRepository.save(new Member("unpagedDto", 78));
+        em.flush();
+
+        // when
+        Page<MemberDto> dtoPage = memberRepository.findMemberDtoPage(Pageable.unpaged());
+        Page<MemberProjection> projectionPage = memberRepository.findByNativeProjection(Pageable.unpaged());
+
+        // then
+        assertThat(dtoPage.getContent()).extracting("username").contains("unpagedDto");
+        assertThat(dtoPage.getTotalElements()).isEqualTo(dtoPage.getContent().size());
+        assertThat(projectionPage.getContent()).extracting("username").contains("unpagedDto");
+        assertThat(projectionPage.getTotalElements()).isEqualTo(projectionPage.getContent().size());
+    }
+
+    @Test
+    public void keysetPaging() {
+        // given
+        memberRepository.save(new Member("member1", 11));
+        memberRepository.save(new Member("member2", 11));
+        memberRepository.save(new Member("member3", 11));
+        memberRepository.save(new Member("member4", 11));
+        memberRepository.save(new Member("member5", 11));
+
+        // when
+        // OFFSET 대신 이전 페이지 마지막 row의 (username, id)를 커서로 넘긴다.
+        Window<Member> first = memberRepository.findByAgeByKeyset(11, null, 2);
+        Window<Member> second = memberRepository.findByAgeByKeyset(11, first.getNextCursor(), 2);
+        Window<Member> last = memberRepository.findByAgeByKeyset(11, second.getNextCursor(), 2);
+
+        // then
+        assertThat(first.getContent()).extracting("username").containsExactly("member5", "member4");
+        assertThat(second.getContent()).extracting("username").containsExactly("member3", "member2");
+        assertThat(last.getContent()).extracting("username").containsExactly("member1");
+        assertThat(first.isHasNext()).isTrue();
+        assertThat(last.isHasNext()).isFalse();
+        assertThat(last.getNextCursor()).isNull();
+    }
+
+    @Test
+    public void saveAllBatched() {
+        // given
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            members.add(new Member("batch" + i, 13));
+        }
+
+        // when
+        // 10개 단위로 flush(batch insert) -> detach
+        long savedCount = memberRepository.saveAllBatched(members, 10);
+
+        // then
+        assertThat(savedCount).isEqualTo(25);
+        assertThat(em.contains(members.get(0))).isFalse(); // detach 되었기 때문에 준영속 상태
+        assertThat(memberRepository.findByAge(13, PageRequest.of(0, 10)).getTotalElements()).isEqualTo(25);
+    }
+
+    @Test
+    public void saveAllBatchedKeepsManagedEntities() {
+        // given
+        Member loaded = memberRepository.save(new Member("batchLoaded", 13));
+        em.flush();
+
+        // when
+        memberRepository.saveAllBatched(Arrays.asList(new Member("batchNew1", 13), new Member("batchNew2", 13)), 1);
+        loaded.setUsername("batchLoadedChanged"); // 저장 후에 수정해도 변경감지가 동작해야 한다.
+        em.flush();
+        em.clear();
+
+        // then
+        assertThat(memberRepository.findById(loaded.getId()).get().getUsername()).isEqualTo("batchLoadedChanged");
+    }
+
+    @Test
+    public void saveAllBatchedInvalidBatchSize() {
+        List<Member> members = Collections.singletonList(new Member("batchInvalid", 13));
+
+        assertThatThrownBy(() -> memberRepository.saveAllBatched(members, 0))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class); // IllegalArgumentException -> 리포지토리 예외 변환
+        assertThatThrownBy(() -> memberRepository.saveAllBatched(members, -1))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+
+    @Test
+    public void streamAll() {
+        // given
+        for (int i = 0; i < 30; i++) {
+            memberRepository.save(new Member("stream" + i, 14));
+        }
+        em.flush();
+        em.clear();
+
+        // when
+        // Stream은 커서를 사용하기 때문에 반드시 close 해야한다.
+        long count;
+        try (Stream<Member> members = memberRepository.streamAll(10)) {
+            count = members.filter(member -> member.getAge() == 14).count();
+        }
+
+        // then
+        // 소비된 엔티티는 바로 detach 되기 때문에 영속성 컨텍스트가 비어있다.
+        assertThat(count).isEqualTo(30);
+        assertThat(em.unwrap(Session.class).getStatistics().getEntityCount()).isEqualTo(0);
+    }
 
     @Test
     public void bulkUpdate() {
@@ -366,6 +500,56 @@ class MemberRepositoryTest {
         // then
     }
 
+    @Test
+    public void readOnlyQuery() {
+        // given
+        Team teamA = new Team("teamA");
+        teamRepository.save(teamA);
+        Member savedMember = memberRepository.save(new Member("readOnly", 10, teamA));
+        em.flush();
+        em.clear();
+
+        // when
+        // 읽기/쓰기 트랜잭션 안에서 호출하면 @ReadOnlyQuery 메서드도 바깥 트랜잭션을 따르기 때문에 변경감지가 동작한다.
+        List<Member> members = memberRepository.findMemberFetchJoin();
+        Member readOnlyMember = members.stream()
+                .filter(member -> member.getId().equals(savedMember.getId()))
+                .findFirst()
+                .get();
+        readOnlyMember.setUsername("changed");
+        em.flush();
+        em.clear();
+
+        // then
+        assertThat(em.unwrap(Session.class).isDefaultReadOnly()).isFalse();
+        assertThat(memberRepository.findById(savedMember.getId()).get().getUsername()).isEqualTo("changed");
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void readOnlyQueryWithoutTransaction() {
+        // given
+        Team team = teamRepository.save(new Team("readOnlyTeam"));
+        Member savedMember = memberRepository.save(new Member("readOnlyNoTx", 10, team));
+
+        try {
+            // when
+            // 바깥 트랜잭션이 없으면 @ReadOnlyQuery가 읽기 전용 트랜잭션을 열기 때문에 변경감지 대상이 아니다.
+            Member readOnlyMember = memberRepository.findMemberFetchJoin().stream()
+                    .filter(member -> member.getId().equals(savedMember.getId()))
+                    .findFirst()
+                    .get();
+            readOnlyMember.setUsername("changed");
+
+            // then
+            assertThat(readOnlyMember.getTeam().getName()).isEqualTo("readOnlyTeam"); // fetch join -> 트랜잭션 밖에서도 접근 가능
+            assertThat(memberRepository.findById(savedMember.getId()).get().getUsername()).isEqualTo("readOnlyNoTx");
+        } finally {
+            memberRepository.deleteById(savedMember.getId());
+            teamRepository.deleteById(team.getId());
+        }
+    }
+
     @Test
     public void lock() {
         // given
@@ -424,6 +608,54 @@ class MemberRepositoryTest {
         assertThat(members.size()).isEqualTo(1);
     }
 
+    @Test
+    public void specCache() {
+        // given
+        Team teamA = new Team("teamA");
+        Team teamB = new Team("teamB");
+        em.persist(teamA);
+        em.persist(teamB);
+
+        em.persist(new Member("m1", 0, teamA));
+        em.persist(new Member("m2", 0, teamB));
+
+        em.flush();
+        em.clear();
+
+        // when
+        // 값만 다르고 모양이 같은 조건은 같은 CriteriaQuery를 사용한다.
+        String shape = Member.class.getName() + ":(username and teamName)";
+        List<Member> result1 = memberRepository.findAll(MemberSpec.username("m1").and(MemberSpec.teamName("teamA")));
+        long hits = (Long) specificationCache.snapshot().get(shape).get("hits"); // 다른 테스트에서 이미 캐시했을수 있다.
+        List<Member> result2 = memberRepository.findAll(MemberSpec.username("m2").and(MemberSpec.teamName("teamB")));
+        List<Member> result3 = memberRepository.findAll(MemberSpec.username("m2").and(MemberSpec.teamName("teamA")));
+
+        // then
+        assertThat(result1).extracting("username").containsExactly("m1");
+        assertThat(result2).extracting("username").containsExactly("m2");
+        assertThat(result3).isEmpty();
+        // 두번째 실행부터는 캐시된 JPQL을 사용한다.
+        assertThat(specificationCache.snapshot().get(shape).get("hits")).isEqualTo(hits + 2);
+    }
+
+    @Test
+    public void specNullValue() {
+        // given
+        em.persist(new Member("specNull", 0));
+        em.flush();
+        em.clear();
+
+        // when
+        // username = null 은 어떤 row와도 일치하지 않는다.
+        List<Member> cached = memberRepository.findAll(MemberSpec.username(null));
+        List<Member> combined = memberRepository.findAll(MemberSpec.username(null)
+                .or((Specification<Member>) (root, query, cb) -> cb.equal(root.get("username"), "specNull")));
+
+        // then
+        assertThat(cached).isEmpty();
+        assertThat(combined).extracting("username").containsExactly("specNull");
+    }
+
     @Test
     public void queryByExample() {
         // given
@@ -468,6 +700,42 @@ class MemberRepositoryTest {
         assertThat(members.size()).isEqualTo(1);
     }
 
+    @Test
+    public void queryByExampleCompiled() {
+        // given
+        Team qbeTeam = new Team("qbeTeam");
+        em.persist(qbeTeam);
+
+        em.persist(new Member("qbe1", 10, qbeTeam));
+        em.persist(new Member("qbe2", 20, qbeTeam));
+        em.persist(new Member("qbe3", 30)); // 팀 없음
+
+        em.flush();
+        em.clear();
+
+        // when
+        // withIgnorePaths("age") 없이도 age = 0 은 조건에서 제외된다.
+        Member probe = new Member("qbe1");
+        probe.setTeam(new Team("qbeTeam"));
+        List<Member> inner = memberRepository.findAllByExample(Example.of(probe), JoinType.INNER);
+
+        // username = qbe3 or team.name = qbeTeam
+        // INNER JOIN 이면 팀이 없는 qbe3는 조회되지 않는다.
+        Member anyProbe = new Member("qbe3");
+        anyProbe.setTeam(new Team("qbeTeam"));
+        ExampleMatcher any = ExampleMatcher.matchingAny();
+        List<Member> anyInner = memberRepository.findAllByExample(Example.of(anyProbe, any), JoinType.INNER);
+        List<Member> anyLeft = memberRepository.findAllByExample(Example.of(anyProbe, any), JoinType.LEFT);
+
+        // then
+        assertThat(inner).extracting("username").containsExactly("qbe1");
+        assertThat(anyInner).extracting("username").containsExactlyInAnyOrder("qbe1", "qbe2");
+        assertThat(anyLeft).extracting("username").containsExactlyInAnyOrder("qbe1", "qbe2", "qbe3");
+        // 인덱스 컬럼(username) 조건이 먼저 나온다.
+        assertThat(specificationCache.snapshot())
+                .containsKey(Member.class.getName() + ":(qbe:username:DEFAULT or qbe:team.name:DEFAULT:LEFT)");
+    }
+
     @Test
     public void projections() {
         // given
@@ -489,6 +757,7 @@ class MemberRepositoryTest {
         for (UserNameOnly userNameOnly : result) {
             System.out.println("userNameOnly = " + userNameOnly.getUsername());
         }
+        assertThat(result.get(0).getUsername()).isEqualTo("m1 0"); // target.username + ' ' + target.age
 
         // class Projection
         // Proxy를 사용하지 않고, 실제 구현체인 Class를 사용한다.
@@ -518,6 +787,34 @@ class MemberRepositoryTest {
         // then
     }
 
+    @Test
+    public void projectionMapper() {
+        // given
+        Team teamA = new Team("mapperTeam");
+        em.persist(teamA);
+        em.persist(new Member("mapper1", 0, teamA));
+        em.persist(new Member("mapper2", 0)); // 팀 없음
+        // flush 하지 않아도 네이티브 쿼리 실행 전에 flush 된다. (addSynchronizedEntityClass)
+
+        // when
+        List<MemberDto> dtos = memberRepository.findMemberDto();
+        List<NestedClosedProjections> nested = memberRepository.findNestedProjectionsByUsername("mapper1");
+        Page<MemberDto> page = memberRepository.findMemberDtoPage(PageRequest.of(0, 100, Sort.by(Sort.Direction.DESC, "id")));
+
+        // then
+        // 영속성 컨텍스트를 거치지 않는다.
+        assertThat(dtos).extracting("username").contains("mapper1").doesNotContain("mapper2"); // inner join
+        assertThat(dtos).filteredOn(dto -> dto.getUsername().equals("mapper1"))
+                .extracting("teamName").containsExactly("mapperTeam");
+
+        assertThat(nested).hasSize(1);
+        assertThat(nested.get(0).getUsername()).isEqualTo("mapper1");
+        assertThat(nested.get(0).getTeam().getName()).isEqualTo("mapperTeam");
+
+        assertThat(page.getContent()).extracting("username").contains("mapper1", "mapper2");
+        assertThat(page.getContent().get(0).getId()).isGreaterThan(page.getContent().get(1).getId());
+    }
+
     @Test
     public void nativeQuery() {
         // given
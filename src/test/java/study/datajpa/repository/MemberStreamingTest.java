@@ -0,0 +1,55 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 대용량 스캔 테스트
+ * ./gradlew largeTest 로 실행 (작은 힙(-Xmx96m)에서 200만건을 스캔)
+ * List로 조회하면 OOM이 발생하지만 Stream은 힙 사용량이 일정하다.
+ */
+@Tag("large")
+@SpringBootTest
+@Transactional // 테스트 데이터가 크기 때문에 롤백한다.
+class MemberStreamingTest {
+
+    static final int ROWS = 2_000_000;
+
+    @Autowired MemberRepository memberRepository;
+    @PersistenceContext EntityManager em;
+
+    @Test
+    public void streamLargeTable() {
+        // given
+        // 시퀀스와 겹치지 않도록 큰 id를 사용, H2의 system_range로 한번에 insert
+        em.createNativeQuery("insert into member (member_id, username, age)" +
+                " select 1000000000 + x, 'large' || x, 15 from system_range(1, " + ROWS + ")")
+                .executeUpdate();
+
+        // when
+        long count;
+        try (Stream<Member> members = memberRepository.streamAll(1000)) {
+            count = members.filter(member -> member.getAge() == 15).count();
+        }
+
+        long dtoCount;
+        try (Stream<MemberDto> members = memberRepository.streamMemberDto(1000)) {
+            dtoCount = members.filter(dto -> dto.getUsername().startsWith("large")).count();
+        }
+
+        // then
+        assertThat(count).isEqualTo(ROWS);
+        assertThat(dtoCount).isEqualTo(ROWS);
+    }
+}
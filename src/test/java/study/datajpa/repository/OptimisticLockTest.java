@@ -0,0 +1,104 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.support.ConflictRetryExecutor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @Version, @RetryOnConflict
+ * 트랜잭션 밖에서 호출해야 시도마다 트랜잭션이 커밋되기 때문에 @Transactional을 사용하지 않는다.
+ */
+@SpringBootTest
+class OptimisticLockTest {
+
+    static final int WRITERS = 8;
+    static final int INCREMENTS = 10;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired ConflictRetryExecutor conflictRetryExecutor;
+
+    @Test
+    public void versionIncrement() {
+        // given
+        Member member = memberRepository.save(new Member("version1", 10));
+        assertThat(member.getVersion()).isEqualTo(0L);
+
+        // when
+        member.setAge(11);
+        Member updated = memberRepository.save(member);
+
+        // then
+        assertThat(updated.getVersion()).isEqualTo(1L);
+        assertThat(memberRepository.findById(member.getId()).get().getVersion()).isEqualTo(1L);
+    }
+
+    @Test
+    public void staleUpdate() {
+        // given
+        Long id = memberRepository.save(new Member("version2", 10)).getId();
+        Member first = memberRepository.findById(id).get();
+        Member second = memberRepository.findById(id).get(); // 같은 version으로 조회한 준영속 엔티티
+
+        // when
+        first.setAge(20);
+        memberRepository.save(first);
+        second.setAge(30);
+
+        // then
+        assertThatThrownBy(() -> memberRepository.save(second))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+        assertThat(memberRepository.findById(id).get().getAge()).isEqualTo(20);
+    }
+
+    @Test
+    public void retryOnConflict() throws Exception {
+        // given
+        Long id = memberRepository.save(new Member("version3", 0)).getId();
+        Map<String, Long> before = conflictRetryExecutor.snapshot();
+
+        // when
+        ExecutorService writers = Executors.newFixedThreadPool(WRITERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < WRITERS; i++) {
+                results.add(writers.submit(() -> {
+                    start.await();
+                    for (int j = 0; j < INCREMENTS; j++) {
+                        memberRepository.increaseAge(id, 1);
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> result : results) {
+                result.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            writers.shutdownNow();
+        }
+
+        // then
+        Member member = memberRepository.findById(id).get();
+        assertThat(member.getAge()).isEqualTo(WRITERS * INCREMENTS); // 충돌한 update도 재시도해서 모두 반영
+        assertThat(member.getVersion()).isEqualTo((long) WRITERS * INCREMENTS);
+        Map<String, Long> after = conflictRetryExecutor.snapshot();
+        assertThat(after.get("conflicts") - before.get("conflicts")).isGreaterThan(0L); // 같은 row를 동시에 수정했기 때문에 충돌이 발생
+        assertThat(after.get("exhausted") - before.get("exhausted")).isEqualTo(0L); // 재시도 횟수 안에 모두 성공
+    }
+}
@@ -0,0 +1,74 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.annotation.Transactional;
+import study.datajpa.dto.MemberDto;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.monitor.QueryCounter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 지연로딩된 team에 접근할 때 member 수 만큼 쿼리가 나가지 않는지(N + 1) 검증
+ * default_batch_fetch_size 설정으로 team은 in (...) 쿼리 한번으로 초기화된다.
+ */
+@SpringBootTest
+@Transactional
+class QueryCountTest {
+
+    @Autowired MemberRepository memberRepository;
+    @PersistenceContext EntityManager em;
+
+    @BeforeEach
+    public void before() {
+        for (int i = 0; i < 10; i++) {
+            Team team = new Team("countTeam" + i);
+            em.persist(team);
+            em.persist(new Member("countMember", 16, team));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void findByUsername() {
+        QueryCounter.start();
+        List<Member> members = memberRepository.findByUsername("countMember");
+        List<MemberDto> dtos = members.stream().map(MemberDto::new).collect(Collectors.toList());
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        assertThat(dtos.size()).isEqualTo(10);
+        assertThat(scope.getTotal()).isLessThanOrEqualTo(2); // member 1 + team 1
+    }
+
+    @Test
+    public void findMemberCustom() {
+        QueryCounter.start();
+        List<Member> members = memberRepository.findMemberCustom();
+        members.forEach(member -> member.getTeam().getName());
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        assertThat(scope.findRepeated(3)).isEmpty();
+    }
+
+    @Test
+    public void findAllPage() {
+        QueryCounter.start();
+        Page<Member> page = memberRepository.findByAge(16, PageRequest.of(0, 5));
+        page.map(MemberDto::new).getContent();
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        assertThat(scope.getTotal()).isLessThanOrEqualTo(3); // member 1 + count 1 + team 1
+    }
+}
@@ -0,0 +1,183 @@
+package study.datajpa.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.support.ReplicaRouter;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 로컬 H2 두개(primary, replica)로 읽기/쓰기 라우팅 확인
+ * 복제는 테스트에서 replica의 heartbeat를 직접 써서 흉내낸다. (자동 확인 주기는 길게 두고 checkLag()를 직접 호출)
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTest.PRIMARY_URL,
+        "datajpa.routing.enabled=true",
+        "datajpa.routing.replica-urls=" + ReplicaRoutingTest.REPLICA_URL,
+        "datajpa.routing.max-lag=5s",
+        "datajpa.routing.lag-check-interval=1h"
+})
+class ReplicaRoutingTest {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing-primary;DB_CLOSE_DELAY=-1";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired DataSource dataSource;
+    @Autowired ReplicaRouter replicaRouter;
+    @Autowired PlatformTransactionManager transactionManager;
+    @Autowired EntityManager em;
+
+    @AfterEach
+    public void after() throws SQLException {
+        replicate("drop table if exists replica_heartbeat");
+        replicate("drop table if exists member");
+        replicate("drop table if exists primary_member");
+        replicaRouter.checkLag();
+    }
+
+    @Test
+    public void routeReadOnlyToReplica() throws SQLException {
+        // given
+        replicate("create table if not exists replica_heartbeat (id int primary key, beat bigint not null)");
+        replicate("insert into replica_heartbeat (id, beat) values (1, " + System.currentTimeMillis() + ")");
+        replicaRouter.checkLag();
+
+        // when
+        String readOnlyUrl = connectionUrl(true);
+        String readWriteUrl = connectionUrl(false);
+
+        // then
+        assertThat(readOnlyUrl).contains("routing-replica");
+        assertThat(readWriteUrl).contains("routing-primary");
+
+        Map<String, Object> replicaStats = replicaRouter.snapshot().get("replica-0");
+        assertThat(replicaStats.get("available")).isEqualTo(true);
+        assertThat((Long) replicaStats.get("routes")).isGreaterThanOrEqualTo(1L);
+    }
+
+    @Test
+    public void routeReadOnlyRepositoryCallToReplica() throws SQLException {
+        // given
+        startReplication();
+        Member member = memberRepository.save(new Member("routingMember", 10));
+        replicateMembers();
+        readWriteTx().executeWithoutResult(status -> memberRepository.findById(member.getId()).get().setAge(20)); // 아직 복제되지 않은 변경
+        long routesBefore = (Long) replicaRouter.snapshot().get("replica-0").get("routes");
+
+        // when
+        Member readOnly = memberRepository.findReadOnlyByUsername("routingMember");
+        List<UsernameOnlyDto> projections = memberRepository.findClazzProjectionsByUsername("routingMember");
+
+        // then
+        // replica에서 조회했기 때문에 변경 전 나이
+        assertThat(readOnly.getAge()).isEqualTo(10);
+        assertThat(projections).hasSize(1);
+        assertThat((Long) replicaRouter.snapshot().get("replica-0").get("routes") - routesBefore).isGreaterThanOrEqualTo(2L);
+    }
+
+    @Test
+    public void replicaReadDoesNotFillSecondLevelCache() throws SQLException {
+        // given
+        startReplication();
+        Member member = memberRepository.save(new Member("staleMember", 70));
+        replicateMembers(); // age 70, version 0
+        readWriteTx().execute(status -> memberRepository.bulkAgePlus(70)); // primary: age 71, version 1 (Member 리전 무효화)
+
+        // when
+        Member replicaRead = memberRepository.findById(member.getId()).get(); // 읽기 전용 트랜잭션 -> replica
+        Member primaryRead = readWriteTx().execute(status -> em.find(Member.class, member.getId()));
+
+        // then
+        assertThat(replicaRead.getAge()).isEqualTo(70);
+        // replica에서 읽은 이전 version이 2차 캐시에 들어갔다면 em.find가 캐시의 age 70, version 0을 반환한다.
+        assertThat(primaryRead.getAge()).isEqualTo(71);
+        assertThat(primaryRead.getVersion()).isEqualTo(1L);
+        assertThat(memberRepository.increaseAge(member.getId(), 1).getAge()).isEqualTo(72); // 재시도 없이 성공
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicaLags() throws SQLException {
+        // given
+        replicate("create table if not exists replica_heartbeat (id int primary key, beat bigint not null)");
+        replicate("insert into replica_heartbeat (id, beat) values (1, " + (System.currentTimeMillis() - 60_000) + ")"); // 1분 지연
+        replicaRouter.checkLag();
+        long fallbacksBefore = (Long) replicaRouter.snapshot().get(ReplicaRouter.PRIMARY).get("readOnlyFallbacks");
+
+        // when
+        String readOnlyUrl = connectionUrl(true);
+
+        // then
+        assertThat(readOnlyUrl).contains("routing-primary");
+        assertThat(replicaRouter.snapshot().get("replica-0").get("available")).isEqualTo(false);
+        assertThat((Long) replicaRouter.snapshot().get(ReplicaRouter.PRIMARY).get("readOnlyFallbacks")).isGreaterThan(fallbacksBefore);
+    }
+
+    @Test
+    public void fallbackToPrimaryWhenReplicationNotStarted() {
+        // given: replica에 heartbeat 테이블이 없음
+
+        // when
+        String readOnlyUrl = connectionUrl(true);
+
+        // then
+        assertThat(readOnlyUrl).contains("routing-primary");
+    }
+
+    private void startReplication() throws SQLException {
+        replicate("create table if not exists replica_heartbeat (id int primary key, beat bigint not null)");
+        replicate("insert into replica_heartbeat (id, beat) values (1, " + System.currentTimeMillis() + ")");
+        replicaRouter.checkLag();
+    }
+
+    // 현재 primary의 member 테이블을 replica로 복사한다. (이후 primary의 변경은 복제되지 않은 상태)
+    private void replicateMembers() throws SQLException {
+        replicate("drop table if exists member");
+        replicate("drop table if exists primary_member");
+        replicate("create linked table primary_member('org.h2.Driver', '" + PRIMARY_URL + "', 'sa', '', 'MEMBER')");
+        replicate("create table member as select * from primary_member");
+    }
+
+    private TransactionTemplate readWriteTx() {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    // 트랜잭션 안에서 첫 쿼리를 실행하는 시점에 커넥션을 가져온다. (LazyConnectionDataSourceProxy)
+    private String connectionUrl(boolean readOnly) {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        tx.setReadOnly(readOnly);
+        return tx.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                return connection.getMetaData().getURL();
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        });
+    }
+
+    // replica에 직접 접속해서 복제를 흉내낸다.
+    private void replicate(String sql) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+}
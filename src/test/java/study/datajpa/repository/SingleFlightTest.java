@@ -0,0 +1,106 @@
+package study.datajpa.repository;
+
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.support.SingleFlight;
+import study.datajpa.repository.support.SingleFlightAspect;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 같은 id로 동시에 조회하면 SQL은 한번만 실행된다.
+ * leader의 select가 실행되기 직전에 나머지 호출이 모두 합류할 때까지 대기시켜서 항상 동시에 조회되도록 한다.
+ */
+@SpringBootTest(properties = "datajpa.cache.enabled=false") // 2차 캐시를 사용하면 두번째 조회부터 SQL이 실행되지 않는다.
+class SingleFlightTest {
+
+    static final int CALLERS = 8;
+
+    static final AtomicInteger memberSelects = new AtomicInteger();
+    static volatile long waitForCoalesced = -1;
+    static SingleFlight singleFlight;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired SingleFlightAspect singleFlightAspect;
+
+    @Test
+    public void concurrentFindById() throws Exception {
+        // given
+        Member member = memberRepository.save(new Member("singleFlight", 10));
+        singleFlight = singleFlightAspect.getSingleFlight();
+        long coalescedBefore = singleFlight.getCoalesced();
+        memberSelects.set(0);
+        waitForCoalesced = coalescedBefore + CALLERS - 1;
+
+        // when
+        ExecutorService callers = Executors.newFixedThreadPool(CALLERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<Member>>> results = new ArrayList<>();
+        List<Member> found = new ArrayList<>();
+        try {
+            for (int i = 0; i < CALLERS; i++) {
+                results.add(callers.submit(() -> {
+                    start.await();
+                    return memberRepository.findById(member.getId());
+                }));
+            }
+            start.countDown();
+
+            // then
+            for (Future<Optional<Member>> result : results) {
+                found.add(result.get(10, TimeUnit.SECONDS).get());
+            }
+        } finally {
+            waitForCoalesced = -1;
+            callers.shutdownNow();
+        }
+
+        assertThat(found).extracting("username").containsOnly("singleFlight");
+        assertThat(found).doesNotHaveDuplicates(); // 호출마다 다른 인스턴스 (Member는 equals를 재정의하지 않는다)
+        assertThat(memberSelects.get()).isEqualTo(1);
+        assertThat(singleFlight.getCoalesced() - coalescedBefore).isEqualTo(CALLERS - 1);
+    }
+
+    @TestConfiguration
+    static class HoldLeaderConfig {
+
+        @Bean
+        public JdbcEventListener holdLeader() {
+            return new JdbcEventListener() {
+                @Override
+                public void onBeforeAnyExecute(StatementInformation statementInformation) {
+                    long target = waitForCoalesced;
+                    if (target < 0 || !statementInformation.getSql().toLowerCase().contains("from member")) {
+                        return;
+                    }
+                    memberSelects.incrementAndGet();
+                    long deadline = System.currentTimeMillis() + 5_000;
+                    while (singleFlight.getCoalesced() < target && System.currentTimeMillis() < deadline) {
+                        try {
+                            Thread.sleep(1);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        }
+                    }
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package study.datajpa.repository;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.entity.Team;
+import study.datajpa.monitor.QueryCounter;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnitUtil;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 2차 캐시는 트랜잭션이 커밋되어야 반영되기 때문에 @Transactional을 사용하지 않는다.
+@SpringBootTest
+class TeamRepositoryTest {
+
+    @Autowired TeamRepository teamRepository;
+    @Autowired MemberRepository memberRepository;
+    @Autowired EntityManagerFactory emf;
+    @Autowired EntityManager em;
+    @Autowired TransactionTemplate tx;
+
+    @Test
+    public void secondLevelCache() {
+        // given
+        Team team = teamRepository.save(new Team("cachedTeam"));
+        CacheRegionStatistics region = emf.unwrap(SessionFactory.class)
+                .getStatistics()
+                .getDomainDataRegionStatistics(Team.class.getName());
+        long hitCount = region.getHitCount();
+
+        // when
+        // findById 마다 트랜잭션(영속성 컨텍스트)이 다르지만 2차 캐시에서 조회된다.
+        teamRepository.findById(team.getId());
+        teamRepository.findById(team.getId());
+
+        // then
+        assertThat(region.getHitCount() - hitCount).isEqualTo(2);
+    }
+
+    @Test
+    public void readOnlyQueryInReadWriteTransaction() {
+        // given
+        Team team = teamRepository.save(new Team("readOnlyTeam"));
+
+        // when
+        // TeamRepository는 @ReadOnlyQuery 이지만 바깥 트랜잭션이 있으면 읽기 전용으로 바꾸지 않는다.
+        tx.executeWithoutResult(status -> teamRepository.findById(team.getId()).get().setName("renamedTeam"));
+
+        // then
+        assertThat(teamRepository.findById(team.getId()).get().getName()).isEqualTo("renamedTeam");
+    }
+
+    @Test
+    public void twoPhasePaging() {
+        // given
+        Team[] teams = new Team[3];
+        for (int i = 0; i < teams.length; i++) {
+            teams[i] = teamRepository.save(new Team("pagingTeam" + i));
+            memberRepository.save(new Member("pagingMember" + i + "-1", 10, teams[i]));
+            memberRepository.save(new Member("pagingMember" + i + "-2", 20, teams[i]));
+        }
+
+        // when
+        QueryCounter.start();
+        Page<Team> page = teamRepository.findAllWithMembers(PageRequest.of(0, 2, Sort.by(Sort.Direction.DESC, "id")));
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        // then
+        assertThat(page.getContent()).extracting("name").containsExactly("pagingTeam2", "pagingTeam1");
+        for (Team team : page.getContent()) {
+            assertThat(Hibernate.isInitialized(team.getMembers())).isTrue();
+            assertThat(team.getMembers()).hasSize(2);
+        }
+        assertThat(page.getTotalElements()).isGreaterThanOrEqualTo(3);
+        assertThat(scope.getTotal()).isLessThanOrEqualTo(3); // id 페이징 + fetch join + count(캐시)
+    }
+
+    @Test
+    public void twoPhasePagingUnpaged() {
+        // given
+        Team team = teamRepository.save(new Team("unpagedTeam"));
+        memberRepository.save(new Member("unpagedMember", 10, team));
+
+        // when
+        Page<Team> page = teamRepository.findAllWithMembers(Pageable.unpaged());
+
+        // then
+        assertThat(page.getContent()).extracting("name").contains("unpagedTeam");
+        assertThat(page.getTotalElements()).isEqualTo(page.getContent().size());
+    }
+
+    @Test
+    public void changeTeamKeepsTeamVersion() {
+        // given
+        Team teamA = teamRepository.save(new Team("versionTeamA"));
+        Team teamB = teamRepository.save(new Team("versionTeamB"));
+        Member member = memberRepository.save(new Member("versionMember", 10, teamA));
+        Long versionA = teamRepository.findById(teamA.getId()).get().getVersion();
+        Long versionB = teamRepository.findById(teamB.getId()).get().getVersion();
+
+        // when
+        tx.executeWithoutResult(status -> em.find(Member.class, member.getId()).changeTeam(em.find(Team.class, teamB.getId())));
+
+        // then
+        // 팀원 컬렉션이 바뀌어도 team 테이블은 수정되지 않는다.
+        assertThat(teamRepository.findById(teamA.getId()).get().getVersion()).isEqualTo(versionA);
+        assertThat(teamRepository.findById(teamB.getId()).get().getVersion()).isEqualTo(versionB);
+        assertThat(memberRepository.findById(member.getId()).get().getTeam().getId()).isEqualTo(teamB.getId());
+    }
+
+    @Test
+    public void changeTeamWithoutInitializing() {
+        // given
+        Team teamA = teamRepository.save(new Team("extraLazyTeamA"));
+        Team teamB = teamRepository.save(new Team("extraLazyTeamB"));
+        for (int i = 0; i < 3; i++) {
+            memberRepository.save(new Member("extraLazyMember" + i, 10, teamA));
+        }
+        Member moved = memberRepository.save(new Member("extraLazyMoved", 10, teamA));
+
+        tx.executeWithoutResult(status -> {
+            Team findTeamA = em.find(Team.class, teamA.getId());
+            Team findTeamB = em.find(Team.class, teamB.getId());
+            Member member = em.find(Member.class, moved.getId());
+
+            // when
+            QueryCounter.start();
+            member.changeTeam(findTeamB);
+            QueryCounter.Scope scope = QueryCounter.stop();
+
+            // then
+            PersistenceUnitUtil util = emf.getPersistenceUnitUtil();
+            assertThat(scope.getTotal()).isZero();
+            assertThat(util.isLoaded(findTeamA, "members")).isFalse();
+            assertThat(util.isLoaded(findTeamB, "members")).isFalse();
+
+            // flush 전: teamA의 count 쿼리에는 옮긴 팀원이 포함되어 있지만 제거 대기중인 팀원으로 빼준다.
+            assertThat(findTeamA.getMemberCount()).isEqualTo(3);
+            assertThat(findTeamA.getMembers()).extracting("username").doesNotContain("extraLazyMoved");
+            assertThat(findTeamA.getMemberCount()).isEqualTo(3);
+
+            // teamB는 큐에 쌓인 add가 있기 때문에 flush 하고 count 쿼리로 조회
+            assertThat(findTeamB.getMemberCount()).isEqualTo(1);
+            assertThat(util.isLoaded(findTeamB, "members")).isFalse();
+
+            // 컬렉션을 로딩하면 변경된 팀원이 반영되어 있다.
+            assertThat(findTeamB.getMembers()).containsExactly(member);
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachedCountStrategyTest {
+
+    Clock clock = Clock.fixed(Instant.parse("2020-03-15T00:00:00Z"), ZoneOffset.UTC);
+
+    @Test
+    public void cacheByQueryAndParams() {
+        // given
+        CachedCountStrategy strategy = new CachedCountStrategy(Duration.ofMinutes(1), clock);
+        AtomicLong executed = new AtomicLong();
+
+        // when
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 10));
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 10));
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 20));
+
+        // then
+        // 파라메터가 다르면 다른 캐시 키
+        assertThat(executed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidate() {
+        // given
+        CachedCountStrategy strategy = new CachedCountStrategy(Duration.ofMinutes(1), clock);
+        AtomicLong executed = new AtomicLong();
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m", executed::incrementAndGet));
+
+        // when
+        strategy.invalidate("Team");
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m", executed::incrementAndGet));
+        strategy.invalidate("Member");
+        long count = strategy.count(CountQuery.of("Member", "select count(m) from Member m", executed::incrementAndGet));
+
+        // then
+        assertThat(executed.get()).isEqualTo(2);
+        assertThat(count).isEqualTo(2);
+    }
+
+    @Test
+    public void expired() {
+        // given
+        CachedCountStrategy strategy = new CachedCountStrategy(Duration.ZERO, clock);
+        AtomicLong executed = new AtomicLong();
+
+        // when
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m", executed::incrementAndGet));
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m", executed::incrementAndGet));
+
+        // then
+        assertThat(executed.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void boundedEntries() {
+        // given
+        MutableClock mutableClock = new MutableClock();
+        CachedCountStrategy strategy = new CachedCountStrategy(Duration.ofSeconds(10), 2, mutableClock);
+        AtomicLong executed = new AtomicLong();
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 10));
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 20));
+
+        // when
+        // 가득 찬 상태에서는 새 키를 캐시하지 않는다.
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 30));
+        int full = strategy.size();
+        // 만료된 키는 제거하고 캐시한다.
+        mutableClock.millis += Duration.ofSeconds(11).toMillis();
+        strategy.count(CountQuery.of("Member", "select count(m) from Member m where m.age = :age", executed::incrementAndGet, 40));
+
+        // then
+        assertThat(full).isEqualTo(2);
+        assertThat(strategy.size()).isEqualTo(1);
+        assertThat(executed.get()).isEqualTo(4);
+    }
+
+    static class MutableClock extends Clock {
+        long millis = Instant.parse("2020-03-15T00:00:00Z").toEpochMilli();
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CompiledProjectionTest {
+
+    @Test
+    public void selectTargetProperties() {
+        // when
+        CompiledProjection<Summary> projection = CompiledProjection.compile(Summary.class);
+        Summary summary = projection.map(new Object[]{"member1", 10});
+
+        // then
+        // 문자열 리터럴 안의 target.은 속성이 아니다.
+        assertThat(projection.select("m")).isEqualTo("m.username, m.age");
+        assertThat(summary.getSummary()).isEqualTo("member1 (target.age = 10)");
+    }
+
+    @Test
+    public void rejectUnsupportedExpression() {
+        assertThatThrownBy(() -> CompiledProjection.compile(RootReference.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompiledProjection.compile(BeanReference.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> CompiledProjection.compile(WithDefaultMethod.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    interface Summary {
+        @Value("#{target.username + ' (target.age = ' + target.age + ')'}")
+        String getSummary();
+    }
+
+    interface RootReference {
+        @Value("#{target}")
+        String getTarget();
+    }
+
+    interface BeanReference {
+        @Value("#{@formatter.format(target.username)}")
+        String getFormatted();
+    }
+
+    interface WithDefaultMethod {
+        @Value("#{target.username}")
+        String getUsername();
+
+        default String getUpperUsername() {
+            return getUsername().toUpperCase();
+        }
+    }
+}
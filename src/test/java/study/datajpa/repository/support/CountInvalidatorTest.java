@@ -0,0 +1,65 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 커밋 이후의 무효화를 확인하기 때문에 @Transactional을 사용하지 않는다.
+@SpringBootTest
+class CountInvalidatorTest {
+
+    static final int AGE = 71;
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate tx;
+    @Autowired EntityManager em;
+
+    @Test
+    public void invalidateAfterUpdateCommit() {
+        // given
+        long before = totalCount();
+        Member member = memberRepository.save(new Member("countInvalidate1", AGE));
+        memberRepository.save(new Member("countInvalidate2", AGE));
+        assertThat(totalCount()).isEqualTo(before + 2); // 캐시
+
+        // when
+        // 변경감지로 나이 변경 (insert/delete가 아닌 update)
+        long inTransaction = tx.execute(status -> {
+            em.find(Member.class, member.getId()).setAge(AGE + 1);
+            em.flush();
+            return totalCount(); // 커밋 전: 쓰기가 발생한 트랜잭션은 캐시를 사용하지 않는다.
+        });
+
+        // then
+        assertThat(inTransaction).isEqualTo(before + 1);
+        assertThat(totalCount()).isEqualTo(before + 1); // 커밋 후 무효화
+    }
+
+    @Test
+    public void rollbackKeepsCache() {
+        // given
+        long before = totalCount();
+
+        // when
+        tx.executeWithoutResult(status -> {
+            memberRepository.save(new Member("countRollback", AGE));
+            status.setRollbackOnly();
+        });
+
+        // then
+        assertThat(totalCount()).isEqualTo(before);
+    }
+
+    // 페이지 크기를 1로 해서 count 쿼리(CountStrategy)를 거치도록 한다.
+    private long totalCount() {
+        return memberRepository.findByAge(AGE, PageRequest.of(0, 1)).getTotalElements();
+    }
+}
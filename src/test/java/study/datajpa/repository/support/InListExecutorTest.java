@@ -0,0 +1,101 @@
+package study.datajpa.repository.support;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.datajpa.entity.Member;
+import study.datajpa.monitor.QueryCounter;
+import study.datajpa.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// 청크로 나눠지도록 chunk-size를 작게 지정
+@SpringBootTest(properties = "datajpa.in-list.chunk-size=4")
+class InListExecutorTest {
+
+    @Autowired MemberRepository memberRepository;
+    @Autowired TransactionTemplate tx;
+    @Autowired EntityManager em;
+    @Autowired EntityManagerFactory emf;
+
+    @Test
+    public void parallelChunks() {
+        // given
+        List<String> names = saveMembers("inList", 10);
+        names.add("inList0"); // 중복은 한번만 조회
+
+        // when
+        List<Member> members = memberRepository.findByNames(names); // 트랜잭션 밖 -> 청크 3개를 동시에 조회
+
+        // then
+        assertThat(members).extracting("username").containsExactlyInAnyOrderElementsOf(names.subList(0, 10));
+    }
+
+    @Test
+    public void parallelChunksCountedOnCaller() {
+        // given
+        List<String> names = saveMembers("inListCount", 12);
+
+        // when
+        QueryCounter.start();
+        memberRepository.findByNames(names);
+        QueryCounter.Scope scope = QueryCounter.stop();
+
+        // then
+        // chunkExecutor 스레드에서 실행한 청크 쿼리도 호출한 스레드에 집계된다. (TaskDecorator)
+        assertThat(scope.getTotal()).isEqualTo(3);
+    }
+
+    @Test
+    public void sequentialChunksInTransaction() {
+        // given
+        List<String> names = saveMembers("inListTx", 10);
+
+        // when
+        List<Member> members = tx.execute(status -> {
+            List<Member> result = memberRepository.findByNames(names);
+            // 호출한 쪽의 영속성 컨텍스트에서 조회
+            assertThat(result).allMatch(em::contains);
+            return result;
+        });
+
+        // then
+        assertThat(members).hasSize(10);
+    }
+
+    @Test
+    public void parameterPadding() {
+        // given
+        saveMembers("inListPad", 4);
+        Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+        memberRepository.findByNames(Arrays.asList("inListPad0", "inListPad1", "inListPad2")); // in (?, ?, ?, ?)
+        long missCount = statistics.getQueryPlanCacheMissCount();
+
+        // when
+        memberRepository.findByNames(Arrays.asList("inListPad0", "inListPad1", "inListPad2", "inListPad3")); // in (?, ?, ?, ?)
+
+        // then
+        // 3개, 4개 모두 4개로 맞춰지기 때문에 같은 쿼리 플랜을 사용한다.
+        assertThat(statistics.getQueryPlanCacheMissCount()).isEqualTo(missCount);
+    }
+
+    private List<String> saveMembers(String prefix, int count) {
+        List<String> names = new ArrayList<>();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            names.add(prefix + i);
+            members.add(new Member(prefix + i, i));
+        }
+        memberRepository.saveAll(members);
+        return names;
+    }
+}
@@ -0,0 +1,72 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class IndexAdvisorTest {
+
+    @Autowired IndexAdvisor indexAdvisor;
+    @Autowired JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void advice() throws Exception {
+        // when
+        List<IndexAdvice> advice = indexAdvisor.analyze();
+
+        // then
+        // username 인덱스(@Table indexes)가 있으면 전체 스캔이 아니다.
+        IndexAdvice findByUsername = find(advice, "MemberRepository.findByUsername (@NamedQuery)");
+        assertThat(findByUsername.getEqualityColumns()).containsExactly("username");
+        assertThat(findByUsername.isFullScan()).isFalse();
+        assertThat(findByUsername.getDdl()).isNull();
+
+        // 동등 조건 -> 범위 조건 순서
+        IndexAdvice derived = find(advice, "MemberRepository.findByUsernameAndAgeGreaterThan");
+        assertThat(derived.getIndexColumns()).isEqualTo(Arrays.asList("username", "age"));
+        assertThat(derived.getUsedIndex()).isEqualTo("idx_member_username");
+
+        IndexAdvice bulk = find(advice, "MemberRepository.bulkAgePlus");
+        assertThat(bulk.getRangeColumns()).containsExactly("age");
+        assertThat(bulk.isFullScan()).isTrue();
+        assertThat(bulk.getDdl()).isEqualTo("create index if not exists idx_member_age on member (age)");
+    }
+
+    @Test
+    public void explain() throws Exception {
+        // given
+        String sql = "explain select * from member where age >= 10";
+        assertThat(jdbcTemplate.queryForObject(sql, String.class)).containsIgnoringCase("tableScan");
+
+        // when
+        List<IndexAdvice> advice = indexAdvisor.analyze();
+        indexAdvisor.apply(advice);
+
+        // then
+        try {
+            assertThat(jdbcTemplate.queryForObject(sql, String.class)).containsIgnoringCase("idx_member_age");
+            assertThat(find(indexAdvisor.analyze(), "MemberRepository.bulkAgePlus").isFullScan()).isFalse();
+        } finally {
+            // 다른 테스트에 영향이 없도록 추천 인덱스를 삭제한다.
+            advice.stream()
+                    .filter(each -> each.getDdl() != null)
+                    .map(each -> each.getDdl().split(" ")[5])
+                    .distinct()
+                    .forEach(index -> jdbcTemplate.execute("drop index if exists " + index));
+        }
+    }
+
+    private IndexAdvice find(List<IndexAdvice> advice, String source) {
+        return advice.stream()
+                .filter(each -> each.getSource().equals(source))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError(source));
+    }
+}
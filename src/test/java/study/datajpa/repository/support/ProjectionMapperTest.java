@@ -0,0 +1,75 @@
+package study.datajpa.repository.support;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ProjectionMapperTest {
+
+    @Test
+    public void projection() {
+        // when
+        ProjectionMapper<Summary> mapper = ProjectionMapper.projection(Summary.class);
+        Summary summary = mapper.map(new Object[]{10, "member1"});
+
+        // then
+        assertThat(mapper.columns()).containsExactly("age", "username");
+        assertThat(summary.getUsername()).isEqualTo("member1");
+        assertThat(summary.getAge()).isEqualTo(10);
+    }
+
+    @Test
+    public void nestedProjection() {
+        // when
+        ProjectionMapper<WithTeam> mapper = ProjectionMapper.projection(WithTeam.class);
+        WithTeam withTeam = mapper.map(new Object[]{"teamA", "member1"});
+        WithTeam withoutTeam = mapper.map(new Object[]{null, "member2"});
+
+        // then
+        assertThat(mapper.columns()).containsExactly("team_name", "username");
+        assertThat(withTeam.getTeam().getName()).isEqualTo("teamA");
+        assertThat(withTeam.getTeam()).isSameAs(withTeam.getTeam()); // row 마다 한번만 만든다.
+        assertThat(withoutTeam.getTeam()).isNull(); // left join으로 팀이 없는 회원
+        assertThat(withoutTeam.getUsername()).isEqualTo("member2");
+    }
+
+    @Test
+    public void rejectUnsupportedMethod() {
+        // row를 읽을때가 아니라 mapper를 만들때 실패한다.
+        assertThatThrownBy(() -> ProjectionMapper.projection(WithDefaultMethod.class))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ProjectionMapper.projection(WithNonGetter.class))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    interface Summary {
+        String getUsername();
+
+        Integer getAge();
+    }
+
+    interface WithTeam {
+        String getUsername();
+
+        TeamName getTeam();
+
+        interface TeamName {
+            String getName();
+        }
+    }
+
+    interface WithDefaultMethod {
+        String getUsername();
+
+        default String getUpperUsername() {
+            return getUsername().toUpperCase();
+        }
+    }
+
+    interface WithNonGetter {
+        String getUsername();
+
+        String username();
+    }
+}